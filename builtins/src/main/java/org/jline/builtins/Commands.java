@@ -40,6 +40,7 @@ import java.util.function.Supplier;
 import org.jline.builtins.Completers.CompletionData;
 import org.jline.builtins.Options;
 import org.jline.builtins.Options.HelpException;
+import org.jline.builtins.Source.MappedSource;
 import org.jline.builtins.Source.StdInSource;
 import org.jline.builtins.Source.URLSource;
 import org.jline.keymap.KeyMap;
@@ -54,6 +55,7 @@ import org.jline.reader.Widget;
 import org.jline.terminal.Terminal;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
+import org.jline.utils.OSUtils;
 
 public class Commands {
 
@@ -166,13 +168,30 @@ public class Commands {
                 Files.find(currentDir, Integer.MAX_VALUE, (path, f) -> pathMatcher.matches(path))
                      .forEach(p -> sources.add(doUrlSource(currentDir, p)));
             } else {
-                sources.add(new URLSource(currentDir.resolve(arg).toUri().toURL(), arg));
+                sources.add(doFileSource(currentDir, arg));
             }
         }
         less.run(sources);
     }
 
+    /**
+     * Regular files are mapped in memory so that large files can be
+     * paged without being read entirely, except on Windows where a mapped
+     * file can not be deleted or replaced until the mapping is collected.
+     */
+    protected static Source doFileSource(Path currentDir, String file) throws MalformedURLException {
+        Path path = currentDir.resolve(file);
+        if (!OSUtils.IS_WINDOWS && Files.isRegularFile(path)) {
+            return new MappedSource(path, file);
+        }
+        return new URLSource(path.toUri().toURL(), file);
+    }
+
     protected static Source doUrlSource(Path currentDir, Path file) {
+        Path path = currentDir.resolve(file);
+        if (!OSUtils.IS_WINDOWS && Files.isRegularFile(path)) {
+            return new MappedSource(path, file.toString());
+        }
         Source out = null;
         try {
             out = new URLSource(currentDir.resolve(file).toUri().toURL(), file.toString());
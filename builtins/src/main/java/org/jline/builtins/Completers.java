@@ -13,15 +13,20 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Function;
@@ -33,7 +38,7 @@ import org.jline.reader.LineReader.Option;
 import org.jline.reader.ParsedLine;
 import org.jline.terminal.Terminal;
 import org.jline.utils.AttributedStringBuilder;
-import org.jline.utils.AttributedStyle;
+import org.jline.utils.StyleResolver;
 
 public class Completers {
 
@@ -258,8 +263,8 @@ public class Completers {
         }        
 
         @Override
-        protected boolean accept(Path path) {
-            return Files.isDirectory(path) && super.accept(path);
+        protected boolean accept(Path path, BasicFileAttributes attributes) {
+            return attributes.isDirectory() && super.accept(path, attributes);
         }
     }
 
@@ -326,6 +331,26 @@ public class Completers {
      */
     public static class FileNameCompleter implements org.jline.reader.Completer
     {
+        public static final String LS_COLORS = "LS_COLORS";
+        public static final String DEFAULT_LS_COLORS = "di=1;31:ln=1;31";
+
+        private static final int MAX_CACHED_DIRECTORIES = 32;
+
+        /**
+         * Listings are only trusted if they have been read some time after the
+         * last modification of the directory, as the modification time may not
+         * be precise enough to detect changes made while reading it.
+         */
+        private static final long MODIFICATION_GRANULARITY = 2000;
+
+        private final Map<Path, DirectoryListing> listings = new LinkedHashMap<Path, DirectoryListing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, DirectoryListing> eldest) {
+                return size() > MAX_CACHED_DIRECTORIES;
+            }
+        };
+        private String lsColors;
+        private Map<String, String> colors;
 
         public void complete(LineReader reader, ParsedLine commandLine, final List<Candidate> candidates) {
             assert commandLine != null;
@@ -352,24 +377,70 @@ public class Completers {
                 curBuf = "";
                 current = getUserDir();
             }
-            try (DirectoryStream<Path> directory = Files.newDirectoryStream(current, this::accept)) {
-                directory.forEach(p -> {
-                    String value = curBuf + p.getFileName().toString();
-                    if (Files.isDirectory(p)) {
+            try {
+                Map<String, String> colors = getColors(reader);
+                for (FileEntry entry : list(current)) {
+                    if (!accept(entry.path, entry.attributes)) {
+                        continue;
+                    }
+                    String value = curBuf + entry.name;
+                    String display = entry.display(this, reader.getTerminal(), colors);
+                    if (entry.attributes.isDirectory()) {
                         candidates.add(
                                 new Candidate(value + (reader.isSet(LineReader.Option.AUTO_PARAM_SLASH) ? sep : ""),
-                                        getDisplay(reader.getTerminal(), p), null, null,
+                                        display, null, null,
                                         reader.isSet(LineReader.Option.AUTO_REMOVE_SLASH) ? sep : null, null, false));
                     } else {
-                        candidates.add(new Candidate(value, getDisplay(reader.getTerminal(), p), null, null, null, null,
+                        candidates.add(new Candidate(value, display, null, null, null, null,
                                 true));
                     }
-                });
+                }
             } catch (IOException e) {
                 // Ignore
             }
         }
 
+        /**
+         * Retrieve the entries of the given directory.  The listing is cached
+         * and only read again when the modification time of the directory changes.
+         */
+        private List<FileEntry> list(Path dir) throws IOException {
+            FileTime lastModified = Files.getLastModifiedTime(dir);
+            Path key = dir.toAbsolutePath();
+            synchronized (listings) {
+                DirectoryListing listing = listings.get(key);
+                if (listing != null && listing.isUpToDate(lastModified)) {
+                    return listing.entries;
+                }
+            }
+            long timestamp = System.currentTimeMillis();
+            List<FileEntry> entries = new ArrayList<>();
+            try (DirectoryStream<Path> directory = Files.newDirectoryStream(dir)) {
+                for (Path p : directory) {
+                    BasicFileAttributes attributes;
+                    boolean symbolicLink;
+                    try {
+                        attributes = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        symbolicLink = attributes.isSymbolicLink();
+                        if (symbolicLink) {
+                            try {
+                                attributes = Files.readAttributes(p, BasicFileAttributes.class);
+                            } catch (IOException e) {
+                                // Broken link
+                            }
+                        }
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    entries.add(new FileEntry(p, attributes, symbolicLink));
+                }
+            }
+            synchronized (listings) {
+                listings.put(key, new DirectoryListing(lastModified, timestamp, entries));
+            }
+            return entries;
+        }
+
         protected boolean accept(Path path) {
             try {
                 return !Files.isHidden(path);
@@ -378,6 +449,18 @@ public class Completers {
             }
         }
 
+        /**
+         * Check if the given path should be proposed as a candidate,
+         * using the attributes read when listing its directory.
+         *
+         * @param path the path
+         * @param attributes the attributes of the path, following symbolic links
+         * @return <code>true</code> if the path is accepted
+         */
+        protected boolean accept(Path path, BasicFileAttributes attributes) {
+            return accept(path);
+        }
+
         protected Path getUserDir() {
             return Paths.get(System.getProperty("user.dir"));
         }
@@ -390,21 +473,150 @@ public class Completers {
             return getUserDir().getFileSystem().getSeparator();
         }
 
+        /**
+         * Retrieve the colors used to display the candidates, using the
+         * <code>LS_COLORS</code> syntax.  They are taken from the
+         * {@link #LS_COLORS} variable of the reader, or from the
+         * environment, and default to {@link #DEFAULT_LS_COLORS}.
+         *
+         * @param reader the line reader
+         * @return the colors specification
+         */
+        protected String getLsColors(LineReader reader) {
+            Object colors = reader.getVariable(LS_COLORS);
+            if (colors == null) {
+                colors = System.getenv(LS_COLORS);
+            }
+            return colors != null ? colors.toString() : DEFAULT_LS_COLORS;
+        }
+
+        private synchronized Map<String, String> getColors(LineReader reader) {
+            String str = getLsColors(reader);
+            if (!Objects.equals(str, lsColors)) {
+                lsColors = str;
+                colors = parseColors(str);
+            }
+            return colors;
+        }
+
+        private static Map<String, String> parseColors(String str) {
+            Map<String, String> colors = new HashMap<>();
+            for (String s : str.split(":")) {
+                int idx = s.indexOf('=');
+                if (idx > 0) {
+                    colors.put(s.substring(0, idx), s.substring(idx + 1));
+                }
+            }
+            return colors;
+        }
+
         protected String getDisplay(Terminal terminal, Path p) {
-            // TODO: use $LS_COLORS for output
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                boolean symbolicLink = attributes.isSymbolicLink();
+                if (symbolicLink && Files.exists(p)) {
+                    attributes = Files.readAttributes(p, BasicFileAttributes.class);
+                }
+                return getDisplay(terminal, p, attributes, symbolicLink, parseColors(DEFAULT_LS_COLORS));
+            } catch (IOException e) {
+                return p.getFileName().toString();
+            }
+        }
+
+        /**
+         * Compute the display of a candidate.  The style is chosen using the
+         * <code>di</code>, <code>ln</code>, <code>ex</code>, <code>fi</code>,
+         * <code>or</code> and <code>*.ext</code> entries of the colors.
+         *
+         * @param terminal the terminal
+         * @param p the path
+         * @param attributes the attributes of the path, following symbolic links
+         * @param symbolicLink whether the path is a symbolic link
+         * @param colors the colors
+         * @return the display
+         */
+        protected String getDisplay(Terminal terminal, Path p, BasicFileAttributes attributes, boolean symbolicLink, Map<String, String> colors) {
             String name = p.getFileName().toString();
-            if (Files.isDirectory(p)) {
-                AttributedStringBuilder sb = new AttributedStringBuilder();
-                sb.styled(AttributedStyle.BOLD.foreground(AttributedStyle.RED), name);
-                sb.append("/");
-                name = sb.toAnsi(terminal);
-            } else if (Files.isSymbolicLink(p)) {
-                AttributedStringBuilder sb = new AttributedStringBuilder();
-                sb.styled(AttributedStyle.BOLD.foreground(AttributedStyle.RED), name);
-                sb.append("@");
-                name = sb.toAnsi(terminal);
-            }
-            return name;
+            String type;
+            String suffix;
+            if (attributes.isDirectory()) {
+                type = colors.containsKey("di") ? "di" : "dr";
+                suffix = "/";
+            } else if (symbolicLink) {
+                type = attributes.isSymbolicLink() && colors.containsKey("or")
+                        ? "or" : colors.containsKey("ln") ? "ln" : "sl";
+                suffix = "@";
+            } else {
+                type = null;
+                suffix = "";
+                if (attributes.isRegularFile()) {
+                    int idx = name.lastIndexOf('.');
+                    if (colors.containsKey("ex") && Files.isExecutable(p)) {
+                        type = "ex";
+                    } else if (idx >= 0 && colors.containsKey("*" + name.substring(idx))) {
+                        type = "*" + name.substring(idx);
+                    } else {
+                        type = "fi";
+                    }
+                } else if (attributes.isOther()) {
+                    type = "ot";
+                }
+            }
+            String spec = type != null ? colors.get(type) : null;
+            if (spec == null && suffix.isEmpty()) {
+                return name;
+            }
+            AttributedStringBuilder sb = new AttributedStringBuilder();
+            if (spec != null) {
+                sb.styled(new StyleResolver(colors::get).resolve(spec), name);
+            } else {
+                sb.append(name);
+            }
+            sb.append(suffix);
+            return sb.toAnsi(terminal);
+        }
+
+        private static class DirectoryListing {
+            final FileTime lastModified;
+            final long timestamp;
+            final List<FileEntry> entries;
+
+            DirectoryListing(FileTime lastModified, long timestamp, List<FileEntry> entries) {
+                this.lastModified = lastModified;
+                this.timestamp = timestamp;
+                this.entries = entries;
+            }
+
+            boolean isUpToDate(FileTime lastModified) {
+                return this.lastModified.equals(lastModified)
+                        && timestamp - lastModified.toMillis() > MODIFICATION_GRANULARITY;
+            }
+        }
+
+        private static class FileEntry {
+            final Path path;
+            final String name;
+            final BasicFileAttributes attributes;
+            final boolean symbolicLink;
+            Terminal terminal;
+            Map<String, String> colors;
+            String display;
+
+            FileEntry(Path path, BasicFileAttributes attributes, boolean symbolicLink) {
+                this.path = path;
+                this.name = path.getFileName().toString();
+                this.attributes = attributes;
+                this.symbolicLink = symbolicLink;
+            }
+
+            synchronized String display(FileNameCompleter completer, Terminal terminal, Map<String, String> colors) {
+                if (display == null || this.terminal != terminal || this.colors != colors) {
+                    display = completer.getDisplay(terminal, path, attributes, symbolicLink, colors);
+                    this.terminal = terminal;
+                    this.colors = colors;
+                }
+                return display;
+            }
         }
 
     }
@@ -21,15 +21,21 @@ import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import org.jline.builtins.Source.MappedSource;
 import org.jline.builtins.Source.ResourceSource;
-import org.jline.builtins.Source.URLSource;
 import org.jline.keymap.BindingReader;
 import org.jline.keymap.KeyMap;
 import org.jline.terminal.Attributes;
@@ -54,6 +60,15 @@ public class Less {
 
     private static final int ESCAPE = 27;
     private static final String MESSAGE_FILE_INFO = "FILE_INFO";
+    private static final int MAPPED_LINES_CACHE_SIZE = 1024;
+    private static final int COMPILED_PATTERNS_CACHE_SIZE = 16;
+    private static final int SEARCH_NOT_FOUND = -1;
+    private static final int SEARCH_CANCELLED = -2;
+    private static final int SEARCH_MIN_BATCH = 1024;
+    private static final int SEARCH_MAX_BATCH = 1 << 20;
+    private static final int SEARCH_BLOCK = 4096;
+    private static final long SEARCH_PROGRESS_DELAY = 200;
+    private static final long FOLLOW_POLL_INTERVAL = 250;
 
     public boolean quitAtSecondEof;
     public boolean quitAtFirstEof;
@@ -81,6 +96,24 @@ public class Less {
     protected int firstLineInMemory = 0;
     protected List<AttributedString> lines = new ArrayList<>();
 
+    // Lines of mapped sources are accessed randomly and only the
+    // most recently displayed ones are kept in memory
+    protected MappedSource mapped;
+    protected final Map<Integer, AttributedString> mappedLines = new LinkedHashMap<Integer, AttributedString>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, AttributedString> eldest) {
+            return size() > MAPPED_LINES_CACHE_SIZE;
+        }
+    };
+
+    protected final Map<String, Pattern> compiledPatterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > COMPILED_PATTERNS_CACHE_SIZE;
+        }
+    };
+    protected SearchCache searchCache;
+
     protected int firstLineToDisplay = 0;
     protected int firstColumnToDisplay = 0;
     protected int offsetInLine = 0;
@@ -94,6 +127,7 @@ public class Less {
     protected int halfWindow;
 
     protected int nbEof;
+    protected boolean following;
 
     protected List<String> patterns = new ArrayList<String>();
     protected int patternId = -1;
@@ -316,6 +350,9 @@ public class Less {
                             case END:
                                 moveForward(Integer.MAX_VALUE);
                                 break;
+                            case FORWARD_FOREVER:
+                                forwardForever();
+                                break;
                             case LEFT_ONE_HALF_SCREEN:
                                 firstColumnToDisplay = Math.max(0, firstColumnToDisplay - size.getColumns() / 2);
                                 break;
@@ -479,6 +516,11 @@ public class Less {
             if (reader != null) {
                 reader.close();
             }
+            for (Source source : this.sources) {
+                if (source instanceof MappedSource) {
+                    ((MappedSource) source).close();
+                }
+            }
             if (status != null) {
                 status.restore();
             }
@@ -610,7 +652,7 @@ public class Less {
             Files.find(currentDir, Integer.MAX_VALUE, (path, f) -> pathMatcher.matches(path))
                  .forEach(p -> sources.add(Commands.doUrlSource(currentDir, p)));
         } else {
-            sources.add(new URLSource(currentDir.resolve(file).toUri().toURL(), file));
+            sources.add(Commands.doFileSource(currentDir, file));
         }
         sourceIdx = sources.size() - 1;
     }
@@ -735,8 +777,9 @@ public class Less {
                         if (type == '/') {
                             moveToNextMatch();
                         } else {
-                            if (lines.size() - firstLineToDisplay <= size.getRows() ) {
-                                firstLineToDisplay = lines.size();
+                            int loaded = mapped != null ? lastLine(firstLineToDisplay + size.getRows() + 1) : lines.size();
+                            if (loaded - firstLineToDisplay <= size.getRows() ) {
+                                firstLineToDisplay = loaded;
                             } else {
                                 moveForward(size.getRows() - 1);
                             }
@@ -820,17 +863,26 @@ public class Less {
         do {
             Source source = sources.get(sourceIdx);
             try {
-                InputStream in = source.read();
+                if (source instanceof MappedSource) {
+                    mapped = (MappedSource) source;
+                    mapped.open();
+                    reader = null;
+                } else {
+                    mapped = null;
+                    InputStream in = source.read();
+                    reader = new BufferedReader(new InputStreamReader(
+                            new InterruptibleInputStream(in)));
+                }
                 if (sources.size() == 2 || sourceIdx == 0) {
                     message = source.getName();
                 } else {
                     message = source.getName() + " (file " + sourceIdx + " of "
                             + (sources.size() - 1) + ")";
                 }
-                reader = new BufferedReader(new InputStreamReader(
-                        new InterruptibleInputStream(in)));
                 firstLineInMemory = 0;
                 lines = new ArrayList<>();
+                mappedLines.clear();
+                searchCache = null;
                 firstLineToDisplay = 0;
                 firstColumnToDisplay = 0;
                 offsetInLine = 0;
@@ -880,43 +932,267 @@ public class Less {
     }
     
     private void moveToNextMatch() throws IOException {
+        moveToMatch(true);
+    }
+
+    private void moveToPreviousMatch() throws IOException {
+        moveToMatch(false);
+    }
+
+    private void moveToMatch(boolean forward) throws IOException {
         Pattern compiled = getPattern();
-        Pattern dpCompiled = getPattern(true);
         if (compiled != null) {
-            for (int lineNumber = firstLineToDisplay + 1; ; lineNumber++) {
-                AttributedString line = getLine(lineNumber);
-                if (line == null) {
-                    break;
-                } else if (!toBeDisplayed(line, dpCompiled)) {
-                    continue;
-                } else if (compiled.matcher(line).find()) {
-                    firstLineToDisplay = lineNumber;
-                    offsetInLine = 0;
-                    return;
-                }
+            int from = forward ? firstLineToDisplay + 1 : firstLineToDisplay - 1;
+            int lineNumber = search(compiled, getPattern(true), from, forward);
+            if (lineNumber >= 0) {
+                firstLineToDisplay = lineNumber;
+                offsetInLine = 0;
+                return;
+            } else if (lineNumber == SEARCH_CANCELLED) {
+                message = "Search interrupted";
+                return;
             }
         }
         message = "Pattern not found";
     }
 
-    private void moveToPreviousMatch() throws IOException {
-        Pattern compiled = getPattern();
-        Pattern dpCompiled = getPattern(true);
-        if (compiled != null) {
-            for (int lineNumber = firstLineToDisplay - 1; lineNumber >= firstLineInMemory; lineNumber--) {
-                AttributedString line = getLine(lineNumber);
-                if (line == null) {
-                    break;
-                } else if (!toBeDisplayed(line, dpCompiled)) {
-                    continue;
-                } else if (compiled.matcher(line).find()) {
-                    firstLineToDisplay = lineNumber;
-                    offsetInLine = 0;
-                    return;
+    /**
+     * Search the first line matching the pattern starting at the given line.
+     * The lines already searched for this pattern are remembered, and the
+     * lines of mapped sources are searched in parallel, by batches of
+     * increasing size so that close matches are found quickly.  The search
+     * can be cancelled with ctrl-c.
+     *
+     * @return the matching line, {@link #SEARCH_NOT_FOUND} or {@link #SEARCH_CANCELLED}
+     */
+    int search(Pattern compiled, Pattern dpCompiled, int from, boolean forward) throws IOException {
+        Source source = sources.get(sourceIdx);
+        if (sourceIdx == 0) {
+            dpCompiled = null;
+        }
+        if (searchCache == null || !searchCache.isFor(source, compiled, dpCompiled)) {
+            searchCache = new SearchCache(source, compiled, dpCompiled);
+        }
+        SearchCache cache = searchCache;
+        cache.cancelled = false;
+        String prevMessage = message;
+        String prevBuffer = null;
+        long startTime = System.currentTimeMillis();
+        SignalHandler prevHandler = terminal.handle(Signal.INT, s -> cache.cancelled = true);
+        try {
+            int batch = SEARCH_MIN_BATCH;
+            int line = from;
+            while (true) {
+                synchronized (cache) {
+                    if (forward) {
+                        int match = cache.matches.nextSetBit(line);
+                        line = cache.scanned.nextClearBit(line);
+                        if (match >= 0 && match < line) {
+                            return match;
+                        } else if (cache.lines >= 0 && line >= cache.lines) {
+                            return SEARCH_NOT_FOUND;
+                        }
+                    } else {
+                        if (cache.lines >= 0 && line >= cache.lines) {
+                            // Lines past the end are never marked as scanned
+                            line = cache.lines - 1;
+                        }
+                        if (line < 0) {
+                            return SEARCH_NOT_FOUND;
+                        }
+                        int match = cache.matches.previousSetBit(line);
+                        line = cache.scanned.previousClearBit(line);
+                        if (match > line) {
+                            return match;
+                        } else if (line < 0) {
+                            return SEARCH_NOT_FOUND;
+                        }
+                    }
+                }
+                if (cache.cancelled || Thread.currentThread().isInterrupted()) {
+                    return SEARCH_CANCELLED;
                 }
+                if (System.currentTimeMillis() - startTime > SEARCH_PROGRESS_DELAY) {
+                    if (prevBuffer == null) {
+                        // Hide the pattern being edited to display the progress
+                        prevBuffer = buffer.toString();
+                        buffer.setLength(0);
+                    }
+                    Long allLines = source.lines();
+                    message = "Searching... " + (allLines != null && allLines > 0
+                            ? Math.min(100, line * 100L / allLines) + "%"
+                            : "line " + (line + 1));
+                    display(false);
+                }
+                int first = forward ? line : Math.max(0, line - batch + 1);
+                int last = forward ? (int) Math.min(Integer.MAX_VALUE, (long) line + batch) : line + 1;
+                SearchTask task = new SearchTask(cache, first, last, forward, mapped != null);
+                if (mapped != null) {
+                    ForkJoinPool.commonPool().invoke(task);
+                } else {
+                    task.invoke();
+                }
+                if (task.failure != null) {
+                    throw task.failure;
+                }
+                batch = Math.min(batch * 2, SEARCH_MAX_BATCH);
+            }
+        } finally {
+            terminal.handle(Signal.INT, prevHandler);
+            message = prevMessage;
+            if (prevBuffer != null) {
+                buffer.setLength(0);
+                buffer.append(prevBuffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the given line as it is searched, without the ANSI
+     * sequences and with expanded tabs.
+     */
+    CharSequence getSearchedLine(String line) {
+        if (line.indexOf(ESCAPE) < 0 && line.indexOf('\t') < 0) {
+            return line;
+        }
+        return AttributedString.fromAnsi(line, tabs);
+    }
+
+    /**
+     * Lines already searched for a pattern, and the ones which matched.
+     */
+    protected static class SearchCache {
+        final Source source;
+        final Pattern pattern;
+        final Pattern displayPattern;
+        final BitSet scanned = new BitSet();
+        final BitSet matches = new BitSet();
+        int lines = -1;
+        volatile boolean cancelled;
+
+        SearchCache(Source source, Pattern pattern, Pattern displayPattern) {
+            this.source = source;
+            this.pattern = pattern;
+            this.displayPattern = displayPattern;
+        }
+
+        boolean isFor(Source source, Pattern pattern, Pattern displayPattern) {
+            return this.source == source && same(this.pattern, pattern) && same(this.displayPattern, displayPattern);
+        }
+
+        private static boolean same(Pattern p1, Pattern p2) {
+            return p1 == p2 || p1 != null && p2 != null
+                    && p1.pattern().equals(p2.pattern()) && p1.flags() == p2.flags();
+        }
+
+        boolean matches(CharSequence line) {
+            return (displayPattern == null || displayPattern.matcher(line).find())
+                    && pattern.matcher(line).find();
+        }
+
+        /**
+         * Record the result of searching a block of lines.
+         *
+         * @param from the first line of the block
+         * @param to the end of the block
+         * @param end the end of the lines actually read, less than <code>to</code> at the end of the source
+         * @param found the lines which matched, relative to <code>from</code>
+         */
+        synchronized void add(int from, int to, int end, BitSet found) {
+            if (end < to) {
+                // Blocks past the end of the source also stop early
+                lines = lines < 0 ? end : Math.min(lines, end);
+            }
+            scanned.set(from, end);
+            for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+                matches.set(from + i);
+            }
+        }
+    }
+
+    /**
+     * Searches a range of lines, splitting it in blocks searched in
+     * parallel.  Blocks which can not contain the first match in the
+     * search direction are skipped.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final SearchCache cache;
+        final int from;
+        final int to;
+        final boolean forward;
+        final boolean parallel;
+        final AtomicInteger best;
+        IOException failure;
+
+        SearchTask(SearchCache cache, int from, int to, boolean forward, boolean parallel) {
+            this(cache, from, to, forward, parallel, new AtomicInteger(forward ? Integer.MAX_VALUE : -1));
+        }
+
+        SearchTask(SearchCache cache, int from, int to, boolean forward, boolean parallel, AtomicInteger best) {
+            this.cache = cache;
+            this.from = from;
+            this.to = to;
+            this.forward = forward;
+            this.parallel = parallel;
+            this.best = best;
+        }
+
+        @Override
+        protected void compute() {
+            if (parallel && to - from > SEARCH_BLOCK) {
+                int mid = from + (to - from) / 2;
+                SearchTask t1 = new SearchTask(cache, from, mid, forward, true, best);
+                SearchTask t2 = new SearchTask(cache, mid, to, forward, true, best);
+                invokeAll(t1, t2);
+                failure = t1.failure != null ? t1.failure : t2.failure;
+                return;
+            }
+            if (cache.cancelled || (forward ? from > best.get() : to - 1 < best.get())) {
+                return;
+            }
+            try {
+                BitSet found = new BitSet();
+                int end = to;
+                if (mapped != null) {
+                    List<String> lines = mapped.readLines(from, to);
+                    for (int i = 0; i < lines.size(); i++) {
+                        if (cache.cancelled) {
+                            return;
+                        }
+                        if (cache.matches(getSearchedLine(lines.get(i)))) {
+                            found.set(i);
+                        }
+                    }
+                    end = from + lines.size();
+                } else {
+                    for (int i = from; i < to; i++) {
+                        if (cache.cancelled) {
+                            return;
+                        }
+                        AttributedString line = getLine(i);
+                        if (line == null) {
+                            end = i;
+                            break;
+                        }
+                        if (cache.matches(line)) {
+                            found.set(i - from);
+                        }
+                    }
+                }
+                cache.add(from, to, end, found);
+                if (!found.isEmpty()) {
+                    if (forward) {
+                        best.accumulateAndGet(from + found.nextSetBit(0), Math::min);
+                    } else {
+                        best.accumulateAndGet(from + found.length() - 1, Math::max);
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
             }
         }
-        message = "Pattern not found";
     }
 
     private String printable(String s) {
@@ -942,10 +1218,14 @@ public class Less {
         int height = size.getRows();
         boolean doOffsets = firstColumnToDisplay == 0 && !chopLongLines;
         if (lines == Integer.MAX_VALUE) {
-            Long allLines = sources.get(sourceIdx).lines();
+            Long allLines = mapped != null ? mapped.lineCount() : sources.get(sourceIdx).lines();
+            if (allLines == null && mapped == null) {
+                // The lines are still being counted, read them all instead
+                allLines = (long) lastLine(Integer.MAX_VALUE);
+            }
             if (allLines != null) {
                 firstLineToDisplay = (int)(long)allLines;
-                for (int l = 0; l < height - 1; l++) {
+                for (int l = 0; l < height - 1 && firstLineToDisplay > 0; l++) {
                     firstLineToDisplay = prevLine2display(firstLineToDisplay, dpCompiled).getU();
                 }
             }
@@ -988,6 +1268,56 @@ public class Less {
         }
     }
 
+    /**
+     * Follow the end of the source as it grows, like <code>tail -f</code>,
+     * until a key is pressed or ctrl-c.
+     */
+    void forwardForever() throws IOException {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        SignalHandler prevHandler = terminal.handle(Signal.INT, s -> interrupted.set(true));
+        int prevNbEof = nbEof;
+        following = true;
+        try {
+            boolean changed = true;
+            while (!interrupted.get() && !Thread.currentThread().isInterrupted()) {
+                if (changed) {
+                    moveForward(Integer.MAX_VALUE);
+                    message = "Waiting for data... (interrupt to abort)";
+                    display(false);
+                }
+                if (terminal.reader().peek(FOLLOW_POLL_INTERVAL) != NonBlockingReader.READ_EXPIRED) {
+                    break;
+                }
+                changed = refresh();
+            }
+        } finally {
+            following = false;
+            nbEof = prevNbEof;
+            message = null;
+            terminal.handle(Signal.INT, prevHandler);
+        }
+    }
+
+    /**
+     * Checks if new lines have been added to the current source.
+     */
+    private boolean refresh() throws IOException {
+        boolean changed;
+        if (mapped != null) {
+            changed = mapped.open();
+            if (changed) {
+                mappedLines.clear();
+            }
+        } else {
+            // Sequential sources are read further when a line is missing
+            changed = getLine(lines.size()) != null;
+        }
+        if (changed) {
+            searchCache = null;
+        }
+        return changed;
+    }
+
     void moveBackward(int lines) throws IOException {
         Pattern dpCompiled = getPattern(true);
         int width = size.getColumns() - (printLineNumbers ? 8 : 0);
@@ -1016,7 +1346,7 @@ public class Less {
         } else {
             message = "(END)";
         }
-        if (!quiet && !veryQuiet && !quitAtFirstEof && !quitAtSecondEof) {
+        if (!quiet && !veryQuiet && !quitAtFirstEof && !quitAtSecondEof && !following) {
             terminal.puts(Capability.bell);
             terminal.writer().flush();
         }
@@ -1130,10 +1460,15 @@ public class Less {
         AttributedStringBuilder msg = new AttributedStringBuilder();
         if (MESSAGE_FILE_INFO.equals(message)){
             Source source = sources.get(sourceIdx);
+            // Do not wait for the lines to be counted, display the progress instead
             Long allLines = source.lines();
+            Long counted = allLines == null ? source.linesCounted() : null;
+            String total = allLines != null ? allLines.toString()
+                    : counted != null ? counted + "+"
+                    : Integer.toString(lines.size());
             message = source.getName() 
                     + (sources.size() > 2 ? " (file " + sourceIdx + " of " + (sources.size() - 1) + ")" : "")
-                    + " lines " + (firstLineToDisplay + 1) + "-" + inputLine + "/" + (allLines != null ? allLines : lines.size())
+                    + " lines " + (firstLineToDisplay + 1) + "-" + inputLine + "/" + total
                     + (eof ? " (END)" : "");
         }
         if (buffer.length() > 0) {
@@ -1170,12 +1505,25 @@ public class Less {
         String _pattern = doDisplayPattern ? displayPattern : pattern;
         if (_pattern != null) {
             boolean insensitive = ignoreCaseAlways || ignoreCaseCond && _pattern.toLowerCase().equals(_pattern);
-            compiled = Pattern.compile("(" + _pattern + ")", insensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            // Patterns are compiled once as they are used for each displayed line
+            compiled = compiledPatterns.computeIfAbsent((insensitive ? "i" : "s") + _pattern,
+                    k -> Pattern.compile("(" + _pattern + ")", insensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0));
         }
         return compiled;
     }
 
     AttributedString getLine(int line) throws IOException {
+        if (mapped != null) {
+            AttributedString str = mappedLines.get(line);
+            if (str == null) {
+                String s = mapped.line(line);
+                if (s != null) {
+                    str = AttributedString.fromAnsi(s, tabs);
+                    mappedLines.put(line, str);
+                }
+            }
+            return str;
+        }
         while (line >= lines.size()) {
             String str = reader.readLine();
             if (str != null) {
@@ -1190,6 +1538,18 @@ public class Less {
         return null;
     }
 
+    /**
+     * Returns the number of the first line after the displayed one
+     * which is not available, up to the given limit.
+     */
+    private int lastLine(int limit) throws IOException {
+        int line = firstLineToDisplay;
+        while (line < limit && getLine(line) != null) {
+            line++;
+        }
+        return line;
+    }
+
     /**
      * This is for long running commands to be interrupted by ctrl-c
      *
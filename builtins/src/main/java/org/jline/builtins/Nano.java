@@ -10,22 +10,29 @@ package org.jline.builtins;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,7 +43,20 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +75,7 @@ import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
 import org.jline.utils.Display;
+import org.jline.utils.OSUtils;
 import org.jline.utils.Status;
 import org.jline.utils.InfoCmp.Capability;
 import org.mozilla.universalchardet.UniversalDetector;
@@ -67,6 +88,8 @@ import static org.jline.keymap.KeyMap.key;
 
 public class Nano {
 
+    private static final long SAVE_THROUGHPUT_DELAY = 500;
+
     // Final fields
     protected final Terminal terminal;
     protected final Display display;
@@ -87,6 +110,7 @@ public class Nano {
     public boolean mouseSupport = false;
     public boolean oneMoreLine = true;
     public boolean constantCursor;
+    public boolean syncOnSave;   // force the written files to the storage device
     public int tabs = 1;   // tabs are not currently supported!
     public String brackets = "\"’)>]}";
     public String matchBrackets = "(<[{)>]}";
@@ -112,6 +136,7 @@ public class Nano {
     protected String searchTerm;
     protected List<String> searchTerms = new ArrayList<>();
     protected int searchTermId = -1;
+    protected Pattern searchPattern;
     protected WriteMode writeMode = WriteMode.WRITE;
     protected boolean writeBackup;
     protected List<String> cutbuffer = new ArrayList<>();
@@ -133,6 +158,13 @@ public class Nano {
     }
 
     protected class Buffer {
+        static final int OFFSETS_CACHE_SIZE = 1024;
+        static final int DETECT_CHARSET_LIMIT = 64 * 1024;
+        static final int SEARCH_BLOCK = 4096;
+        static final int SEARCH_MAX_BATCH = 1 << 16;
+        static final long SEARCH_PROGRESS_DELAY = 200;
+        static final int SEARCH_CANCELLED = -2;
+
         String file;
         Charset charset;
         WriteFormat format = WriteFormat.UNIX;
@@ -143,7 +175,13 @@ public class Nano {
         int offsetInLineToDisplay;
 
         int line;
-        List<LinkedList<Integer>> offsets = new ArrayList<>();
+        // Wrap offsets, computed lazily for the displayed lines
+        Map<Integer, LinkedList<Integer>> offsets = new LinkedHashMap<Integer, LinkedList<Integer>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LinkedList<Integer>> eldest) {
+                return size() > OFFSETS_CACHE_SIZE;
+            }
+        };
         int offsetInLine;
         int column;
         int wantedColumn;
@@ -152,6 +190,14 @@ public class Nano {
         SyntaxHighlighter syntaxHighlighter;
 
         boolean dirty;
+        boolean readFailureReported;
+
+        // The mapped file and its attributes when it was mapped, as the
+        // unmodified lines are written by copying the bytes of the mapping
+        Path mappedPath;
+        long mappedSize;
+        FileTime mappedModified;
+        Object mappedKey;
 
         protected Buffer(String file) {
             this.file = file;
@@ -178,9 +224,16 @@ public class Nano {
                 return;
             }
 
-            try (InputStream fis = Files.newInputStream(path))
-            {
-                read(fis);
+            try {
+                // A mapped file can not be replaced on Windows, and the
+                // mapping is only released when garbage collected
+                if (!OSUtils.IS_WINDOWS && Files.isRegularFile(path) && Files.size(path) <= Integer.MAX_VALUE) {
+                    map(path);
+                } else {
+                    try (InputStream fis = Files.newInputStream(path)) {
+                        read(fis);
+                    }
+                }
             } catch (IOException e) {
                 setMessage("Error reading " + file + ": " + e.getMessage());
             }
@@ -199,18 +252,84 @@ public class Nano {
             read(is);
         }
 
-        void read(InputStream fis) throws IOException {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            int remaining;
-            while ((remaining = fis.read(buffer)) > 0) {
-                bos.write(buffer, 0, remaining);
+        /**
+         * Maps the file instead of reading it, so that its lines are
+         * only decoded when needed.
+         */
+        void map(Path path) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            ByteBuffer bytes;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
             }
-            byte[] bytes = bos.toByteArray();
+            detectCharset(bytes);
+            if (!PieceTable.isSupported(charset)) {
+                try (InputStream fis = Files.newInputStream(path)) {
+                    read(fis);
+                }
+                return;
+            }
+            lines = new PieceTable(bytes, charset);
+            mappedPath = path;
+            mappedSize = attrs.size();
+            mappedModified = attrs.lastModifiedTime();
+            mappedKey = attrs.fileKey();
+            if (!hasLine(0)) {
+                lines.add("");
+            }
+            computeAllOffsets();
+            moveToChar(0);
+        }
 
+        /**
+         * Whether the mapped file has been modified in place since it was
+         * mapped, in which case the bytes of the mapping can not be trusted
+         * anymore.  A file which has been replaced or removed is fine, as
+         * the mapping still refers to the original one.
+         */
+        boolean isMappedFileModified() throws IOException {
+            if (mappedPath == null) {
+                return false;
+            }
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(mappedPath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+            return Objects.equals(attrs.fileKey(), mappedKey)
+                    && (attrs.size() != mappedSize || !attrs.lastModifiedTime().equals(mappedModified));
+        }
+
+        /**
+         * Records the attributes of the mapped file again after the buffer
+         * has been appended to it, which leaves the mapped bytes untouched.
+         */
+        void mappedFileAppended() throws IOException {
+            if (mappedPath != null) {
+                BasicFileAttributes attrs = Files.readAttributes(mappedPath, BasicFileAttributes.class);
+                if (Objects.equals(attrs.fileKey(), mappedKey)) {
+                    mappedSize = attrs.size();
+                    mappedModified = attrs.lastModifiedTime();
+                }
+            }
+        }
+
+        /**
+         * Detects the charset from the beginning of the content only,
+         * as scanning a large file would delay its display.
+         */
+        void detectCharset(ByteBuffer bytes) {
             try {
                 UniversalDetector detector = new UniversalDetector(null);
-                detector.handleData(bytes, 0, bytes.length);
+                ByteBuffer buf = bytes.duplicate();
+                buf.limit(Math.min(buf.limit(), buf.position() + DETECT_CHARSET_LIMIT));
+                byte[] chunk = new byte[4096];
+                while (buf.hasRemaining() && !detector.isDone()) {
+                    int nb = Math.min(chunk.length, buf.remaining());
+                    buf.get(chunk, 0, nb);
+                    detector.handleData(chunk, 0, nb);
+                }
                 detector.dataEnd();
                 if (detector.getDetectedCharset() != null) {
                     charset = Charset.forName(detector.getDetectedCharset());
@@ -218,15 +337,26 @@ public class Nano {
             } catch (Throwable t) {
                 // Ignore
             }
+        }
+
+        void read(InputStream fis) throws IOException {
+            // Detect the charset from the first bytes, then decode them
+            // along with the rest of the stream
+            byte[] prefix = new byte[DETECT_CHARSET_LIMIT];
+            int nb = 0;
+            int remaining;
+            while (nb < prefix.length && (remaining = fis.read(prefix, nb, prefix.length - nb)) > 0) {
+                nb += remaining;
+            }
+            detectCharset(ByteBuffer.wrap(prefix, 0, nb));
 
             // TODO: detect format, do not eat last newline
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(new ByteArrayInputStream(bytes), charset))) {
-                String line;
-                lines.clear();
-                while ((line = reader.readLine()) != null) {
-                    lines.add(line);
-                }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new SequenceInputStream(new ByteArrayInputStream(prefix, 0, nb), fis), charset));
+            String line;
+            lines.clear();
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
             }
             if (lines.isEmpty()) {
                 lines.add("");
@@ -255,23 +385,35 @@ public class Nano {
                 idx = mod.indexOf('\n', last);
             }
             ins.add(mod.substring(last));
+            syntaxHighlighter.linesChanged(line, 1, ins.size());
             lines.set(line, ins.get(0));
-            offsets.set(line, computeOffsets(ins.get(0)));
+            offsets.remove(line);
             for (int i = 1; i < ins.size(); i++) {
                 ++line;
                 lines.add(line, ins.get(i));
-                offsets.add(line, computeOffsets(ins.get(i)));
+            }
+            if (ins.size() > 1) {
+                computeAllOffsets();
             }
             moveToChar(ins.get(ins.size() - 1).length() - (text.length() - pos));
             ensureCursorVisible();
             dirty = true;
         }
 
+        /**
+         * Discards the wrap offsets, which are computed again when needed.
+         */
         void computeAllOffsets() {
             offsets.clear();
-            for (String text : lines) {
-                offsets.add(computeOffsets(text));
+        }
+
+        LinkedList<Integer> getOffsets(int line) {
+            LinkedList<Integer> offs = offsets.get(line);
+            if (offs == null) {
+                offs = computeOffsets(lines.get(line));
+                offsets.put(line, offs);
             }
+            return offs;
         }
 
         LinkedList<Integer> computeOffsets(String text) {
@@ -332,17 +474,18 @@ public class Nano {
                     }
                     String prev = lines.get(--line);
                     lines.set(line, prev + text);
-                    offsets.set(line, computeOffsets(prev + text));
-                    moveToChar(length(prev, tabs));
                     lines.remove(line + 1);
-                    offsets.remove(line + 1);
+                    syntaxHighlighter.linesChanged(line, 2, 1);
+                    computeAllOffsets();
+                    moveToChar(length(prev, tabs));
                     count--;
                     dirty = true;
                 } else {
                     int nb = Math.min(pos, count);
                     text = text.substring(0, pos - nb) + text.substring(pos);
                     lines.set(line, text);
-                    offsets.set(line, computeOffsets(text));
+                    offsets.remove(line);
+                    syntaxHighlighter.linesChanged(line, 1, 1);
                     moveToChar(offsetInLine + column - nb);
                     count -= nb;
                     dirty = true;
@@ -418,10 +561,10 @@ public class Nano {
         }
 
         private Optional<Integer> prevLineOffset(int line, int offsetInLine) {
-            if (line >= offsets.size()) {
+            if (!hasLine(line)) {
                 return Optional.empty();
             }
-            Iterator<Integer> it = offsets.get(line).descendingIterator();
+            Iterator<Integer> it = getOffsets(line).descendingIterator();
             while (it.hasNext()) {
                 int off = it.next();
                 if (off < offsetInLine) {
@@ -432,10 +575,10 @@ public class Nano {
         }
 
         private Optional<Integer> nextLineOffset(int line, int offsetInLine) {
-            if (line >= offsets.size()) {
+            if (!hasLine(line)) {
                 return Optional.empty();
             }
-            return offsets.get(line).stream()
+            return getOffsets(line).stream()
                     .filter(o -> o > offsetInLine)
                     .findFirst();
         }
@@ -554,6 +697,16 @@ public class Nano {
             int rwidth = size.getColumns();
             int height = size.getRows() - header.size() - computeFooter().size();
 
+            // Do not scroll line by line when the cursor is far away,
+            // such as after a search
+            if (line < firstLineToDisplay - height) {
+                firstLineToDisplay = line;
+                offsetInLineToDisplay = 0;
+            } else if (line > firstLineToDisplay + height) {
+                firstLineToDisplay = line - height;
+                offsetInLineToDisplay = 0;
+            }
+
             while (line < firstLineToDisplay
                     || line == firstLineToDisplay && offsetInLine < offsetInLineToDisplay) {
                 moveDisplayUp(smoothScrolling ? 1 : height / 2);
@@ -586,7 +739,41 @@ public class Nano {
         }
 
         String getLine(int line) {
-            return line < lines.size() ? lines.get(line) : null;
+            return hasLine(line) ? lines.get(line) : null;
+        }
+
+        /**
+         * Checks if the given line exists, without waiting for the whole
+         * file to be indexed, so that the first lines of a large file can
+         * be displayed right away.
+         */
+        boolean hasLine(int line) {
+            if (lines instanceof PieceTable) {
+                return ((PieceTable) lines).hasLine(line);
+            }
+            return line < lines.size();
+        }
+
+        boolean isIndexed() {
+            return !(lines instanceof PieceTable) || ((PieceTable) lines).isIndexed();
+        }
+
+        /**
+         * Reports the lines of the mapped file which could not be read
+         * because another process truncated it.
+         *
+         * @return <code>true</code> if the failure has just been reported
+         */
+        boolean checkReadFailure() {
+            if (lines instanceof PieceTable && !readFailureReported) {
+                IOException failure = ((PieceTable) lines).getFailure();
+                if (failure != null) {
+                    readFailureReported = true;
+                    setMessage("Error reading " + file + ": " + failure.getMessage());
+                    return true;
+                }
+            }
+            return false;
         }
 
         String getTitle() {
@@ -667,7 +854,7 @@ public class Nano {
         }
 
         void highlightDisplayedLine(int curLine, int curOffset, int nextOffset, AttributedStringBuilder line){
-            AttributedString disp = syntaxHighlighter.highlightNextLine(new AttributedString(getLine(curLine)));
+            AttributedString disp = syntaxHighlighter.highlight(lines, curLine);
             if (!mark) {
                 line.append(disp.columnSubSequence(curOffset, nextOffset));
             } else if (getMarkStart()[0] == getMarkEnd()[0]) {
@@ -780,10 +967,9 @@ public class Nano {
             int curLine = firstLineToDisplay;
             int curOffset = offsetInLineToDisplay;
             int prevLine = -1;
-            syntaxHighlighter.reset();
             for (int terminalLine = 0; terminalLine < nbLines; terminalLine++) {
                 AttributedStringBuilder line = new AttributedStringBuilder().tabs(tabs);
-                if (printLineNumbers && curLine < lines.size()) {
+                if (printLineNumbers && hasLine(curLine)) {
                     line.style(s);
                     if (curLine != prevLine) {
                         line.append(String.format("%7d ", curLine + 1));
@@ -793,7 +979,7 @@ public class Nano {
                     line.style(AttributedStyle.DEFAULT);
                     prevLine = curLine;
                 }
-                if (curLine >= lines.size()) {
+                if (!hasLine(curLine)) {
                     // Nothing to do
                 } else if (!wrapping) {
                     AttributedString disp = new AttributedString(getLine(curLine));
@@ -979,8 +1165,6 @@ public class Nano {
                 return;
             }
             setMessage(null);
-            int cur = line;
-            int dir = searchBackwards ? -1 : +1;
             int newPos = -1;
             int newLine = -1;
             // Search on current line
@@ -997,17 +1181,15 @@ public class Nano {
             }
             // Check other lines
             if (newPos < 0) {
-                while (true) {
-                    cur = (cur + dir + lines.size()) % lines.size();
-                    if (cur == line) {
-                        break;
-                    }
-                    List<Integer> res = doSearch(lines.get(cur));
-                    if (!res.isEmpty()) {
-                        newPos = searchBackwards ? res.get(res.size() - 1) : res.get(0);
-                        newLine = cur;
-                        break;
-                    }
+                int found = findLine(line, searchBackwards, true);
+                if (found == SEARCH_CANCELLED) {
+                    setMessage("Cancelled");
+                    return;
+                }
+                if (found >= 0) {
+                    List<Integer> res = doSearch(lines.get(found));
+                    newPos = searchBackwards ? res.get(res.size() - 1) : res.get(0);
+                    newLine = found;
                 }
             }
             if (newPos < 0) {
@@ -1033,10 +1215,7 @@ public class Nano {
         }
 
         private List<Integer> doSearch(String text) {
-            Pattern pat = Pattern.compile(searchTerm,
-                    (searchCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)
-                            | (searchRegexp ? 0 : Pattern.LITERAL));
-            Matcher m = pat.matcher(text);
+            Matcher m = getSearchPattern().matcher(text);
             List<Integer> res = new ArrayList<>();
             while (m.find()) {
                 res.add(m.start());
@@ -1044,6 +1223,178 @@ public class Nano {
             return res;
         }
 
+        /**
+         * Finds the first line matching the search pattern after the given
+         * one, wrapping around the end of the buffer if asked to.
+         *
+         * @return the matching line, -1 if none, or
+         *         <code>SEARCH_CANCELLED</code> if the user cancelled
+         */
+        private int findLine(int from, boolean backwards, boolean wrap) {
+            int size = lines.size();
+            int count = wrap ? size - 1 : backwards ? from : size - 1 - from;
+            SearchTask search = new SearchTask(concurrentLines(), getSearchPattern(), from, backwards ? -1 : 1, size);
+            if (!runInBatches(count, "Searching... ",
+                    (start, end) -> ForkJoinPool.commonPool().invoke(new SearchTask(search, start, end)),
+                    () -> search.best.get() < Integer.MAX_VALUE)) {
+                return SEARCH_CANCELLED;
+            }
+            return search.best.get() < Integer.MAX_VALUE ? search.lineAt(search.best.get()) : -1;
+        }
+
+        /**
+         * Asks for each match of the search pattern from the cursor to the
+         * end of the buffer if it should be replaced.
+         */
+        void replace(String replacement) {
+            Pattern pattern = getSearchPattern();
+            String repl = searchRegexp ? replacement : Matcher.quoteReplacement(replacement);
+            int count = 0;
+            int cur = line;
+            int pos = offsetInLine + column;
+            boolean cancelled = false;
+            while (true) {
+                String text = lines.get(cur);
+                Matcher m = pattern.matcher(text);
+                if (pos > text.length() || !m.find(pos)) {
+                    int found = findLine(cur, false, false);
+                    if (found < 0) {
+                        cancelled = found == SEARCH_CANCELLED;
+                        break;
+                    }
+                    cur = found;
+                    pos = 0;
+                    continue;
+                }
+                line = cur;
+                moveRight(m.start(), true);
+                Operation op = getYNC("Replace this instance? ", true);
+                if (op == Operation.CANCEL) {
+                    cancelled = true;
+                    break;
+                } else if (op == Operation.ALL) {
+                    int nb = replaceAll(cur, m.start(), pattern, repl);
+                    if (nb < 0) {
+                        cancelled = true;
+                    } else {
+                        count += nb;
+                    }
+                    break;
+                } else if (op == Operation.YES) {
+                    StringBuffer sb = new StringBuffer();
+                    m.appendReplacement(sb, repl);
+                    pos = sb.length();
+                    sb.append(text, m.end(), text.length());
+                    lines.set(cur, sb.toString());
+                    offsets.remove(cur);
+                    syntaxHighlighter.linesChanged(cur, 1, 1);
+                    dirty = true;
+                    count++;
+                } else {
+                    pos = m.end();
+                }
+                if (m.end() == m.start()) {
+                    pos++;
+                }
+            }
+            if (cancelled) {
+                setMessage("Cancelled");
+            } else {
+                setMessage("Replaced " + count + " occurrence" + (count != 1 ? "s" : ""));
+            }
+        }
+
+        /**
+         * Replaces all the matches from the given position to the end of the
+         * buffer.  The replaced lines are computed in parallel and the buffer
+         * is modified at once, so that its wrap offsets are only discarded
+         * once.
+         *
+         * @return the number of replacements, or -1 if the user cancelled
+         */
+        private int replaceAll(int cur, int pos, Pattern pattern, String replacement) {
+            AtomicInteger count = new AtomicInteger();
+            TreeMap<Integer, String> changes = new TreeMap<>();
+            String text = lines.get(cur);
+            Matcher m = pattern.matcher(text);
+            m.region(pos, text.length()).useTransparentBounds(true).useAnchoringBounds(false);
+            String replaced = ReplaceTask.replace(m, replacement, count);
+            if (replaced != null) {
+                changes.put(cur, replaced);
+            }
+            IntFunction<String> reader = concurrentLines();
+            int first = cur + 1;
+            if (!runInBatches(lines.size() - first, "Replacing... ",
+                    (start, end) -> changes.putAll(ForkJoinPool.commonPool().invoke(
+                            new ReplaceTask(reader, pattern, replacement, first + start, first + end, count))),
+                    () -> false)) {
+                return -1;
+            }
+            if (!changes.isEmpty()) {
+                if (lines instanceof PieceTable) {
+                    ((PieceTable) lines).setAll(changes);
+                } else {
+                    changes.forEach(lines::set);
+                }
+                for (int l : changes.keySet()) {
+                    syntaxHighlighter.linesChanged(l, 1, 1);
+                }
+                computeAllOffsets();
+                dirty = true;
+            }
+            return count.get();
+        }
+
+        /**
+         * Processes a number of lines in batches of growing size, checking
+         * between two batches if the user has cancelled with Ctrl-C, and
+         * displaying the progress if it takes some time.
+         *
+         * @return <code>false</code> if the user cancelled
+         */
+        private boolean runInBatches(int count, String progress, BiConsumer<Integer, Integer> batch, BooleanSupplier done) {
+            long startTime = System.currentTimeMillis();
+            boolean displayed = false;
+            String prevEditMessage = editMessage;
+            try {
+                int size = SEARCH_BLOCK;
+                for (int start = 0; start < count && !done.getAsBoolean(); start += size, size = Math.min(size * 2, SEARCH_MAX_BATCH)) {
+                    if (start > 0) {
+                        if (bindingReader.peekCharacter(1) == ctrl('C').charAt(0)) {
+                            bindingReader.readCharacter();
+                            return false;
+                        }
+                        if (System.currentTimeMillis() - startTime > SEARCH_PROGRESS_DELAY) {
+                            // Hide the prompt while displaying the progress
+                            editMessage = null;
+                            setMessage(progress + (100L * start / count) + "%");
+                            display();
+                            displayed = true;
+                        }
+                    }
+                    batch.accept(start, start + Math.min(size, count - start));
+                }
+                return true;
+            } finally {
+                if (displayed) {
+                    editMessage = prevEditMessage;
+                    setMessage(null);
+                }
+            }
+        }
+
+        /**
+         * Returns a function reading the lines of the buffer, which can be
+         * called from several threads as long as the buffer is not modified.
+         */
+        private IntFunction<String> concurrentLines() {
+            if (lines instanceof PieceTable) {
+                PieceTable table = (PieceTable) lines;
+                return table::peek;
+            }
+            return lines::get;
+        }
+
         public void matching() {
             int opening = getCurrentChar();
             int idx = matchBrackets.indexOf(opening);
@@ -1142,11 +1493,14 @@ public class Nano {
                         int cole = e[1];
                         cutbuffer.add(l.substring(cols, cole));
                         lines.set(s[0], l.substring(0, cols) + l.substring(cole));
+                        syntaxHighlighter.linesChanged(s[0], 1, 1);
                         computeAllOffsets();
                         moveRight(cols, true);
                     } else {
                         int ls = s[0];
                         int cs = s[1];
+                        int nb = e[0] - ls + 1;
+                        int size = lines.size();
                         if (s[1] != 0) {
                             String l = lines.get(s[0]);
                             int col = s[1];
@@ -1164,6 +1518,7 @@ public class Nano {
                             cutbuffer.add(l.substring(0, col));
                             lines.set(s[0], l.substring(col));
                         }
+                        syntaxHighlighter.linesChanged(ls, nb, nb + lines.size() - size);
                         computeAllOffsets();
                         gotoLine(cs, ls);
                     }
@@ -1172,9 +1527,12 @@ public class Nano {
                 } else if (cut2end || toEnd) {
                     String l = lines.get(line);
                     int col = offsetInLine + column;
+                    int size = lines.size();
                     cutbuffer.add(l.substring(col));
                     lines.set(line, l.substring(0, col));
-                    if (toEnd) {
+                    if (!toEnd) {
+                        syntaxHighlighter.linesChanged(line, 1, 1);
+                    } else {
                         line++;
                         while (true) {
                             cutbuffer.add(lines.get(line));
@@ -1184,10 +1542,12 @@ public class Nano {
                                 break;
                             }
                         }
+                        syntaxHighlighter.linesChanged(line, size - line, 1);
                     }
                 } else {
                     cutbuffer.add(lines.get(line));
                     lines.remove(line);
+                    syntaxHighlighter.linesChanged(line, 1, 0);
                     offsetInLine = 0;
                     if (line > lines.size() - 1) {
                         line--;
@@ -1208,10 +1568,12 @@ public class Nano {
             int col = offsetInLine + column;
             if (cut2end) {
                 lines.set(line, l.substring(0, col) + cutbuffer.get(0) + l.substring(col));
+                syntaxHighlighter.linesChanged(line, 1, 1);
                 computeAllOffsets();
                 moveRight(col + cutbuffer.get(0).length(), true);
             } else if (col == 0) {
                 lines.addAll(line, cutbuffer);
+                syntaxHighlighter.linesChanged(line, 0, cutbuffer.size());
                 computeAllOffsets();
                 if (cutbuffer.size() > 1) {
                     gotoLine(cutbuffer.get(cutbuffer.size() - 1).length(), line + cutbuffer.size());
@@ -1220,6 +1582,7 @@ public class Nano {
                 }
             } else {
                 int gotol = line;
+                syntaxHighlighter.linesChanged(line, 1, cutbuffer.size());
                 if (cutbuffer.size() == 1) {
                     lines.set(line, l.substring(0, col) + cutbuffer.get(0) + l.substring(col));
                 } else {
@@ -1282,81 +1645,910 @@ public class Nano {
         }
     }
 
-    private static class SyntaxHighlighter {
-        private List<HighlightRule> rules = new ArrayList<>();
-        private int ruleStartId = 0;
+    /**
+     * Looks for the first line matching a pattern in a range of positions
+     * in the search order, which starts after a given line and wraps around
+     * the end of the buffer.  The ranges following a match are skipped.
+     */
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final IntFunction<String> lines;
+        final Pattern pattern;
+        final int from;
+        final int dir;
+        final int size;
+        final int start;
+        final int end;
+        final AtomicInteger best;
+
+        SearchTask(IntFunction<String> lines, Pattern pattern, int from, int dir, int size) {
+            this(lines, pattern, from, dir, size, 0, 0, new AtomicInteger(Integer.MAX_VALUE));
+        }
+
+        SearchTask(SearchTask search, int start, int end) {
+            this(search.lines, search.pattern, search.from, search.dir, search.size, start, end, search.best);
+        }
+
+        private SearchTask(IntFunction<String> lines, Pattern pattern, int from, int dir, int size,
+                           int start, int end, AtomicInteger best) {
+            this.lines = lines;
+            this.pattern = pattern;
+            this.from = from;
+            this.dir = dir;
+            this.size = size;
+            this.start = start;
+            this.end = end;
+            this.best = best;
+        }
+
+        int lineAt(int position) {
+            return Math.floorMod(from + dir * (position + 1), size);
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > Buffer.SEARCH_BLOCK) {
+                int mid = start + (end - start) / 2;
+                invokeAll(new SearchTask(this, start, mid), new SearchTask(this, mid, end));
+                return;
+            }
+            Matcher matcher = pattern.matcher("");
+            for (int i = start; i < end && i < best.get(); i++) {
+                if (matcher.reset(lines.apply(lineAt(i))).find()) {
+                    best.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the lines resulting from the replacement of all the matches
+     * of a pattern in a range of lines.
+     */
+    private static class ReplaceTask extends RecursiveTask<TreeMap<Integer, String>> {
+        private static final long serialVersionUID = 1L;
+
+        final IntFunction<String> lines;
+        final Pattern pattern;
+        final String replacement;
+        final int start;
+        final int end;
+        final AtomicInteger count;
+
+        ReplaceTask(IntFunction<String> lines, Pattern pattern, String replacement, int start, int end, AtomicInteger count) {
+            this.lines = lines;
+            this.pattern = pattern;
+            this.replacement = replacement;
+            this.start = start;
+            this.end = end;
+            this.count = count;
+        }
+
+        @Override
+        protected TreeMap<Integer, String> compute() {
+            if (end - start > Buffer.SEARCH_BLOCK) {
+                int mid = start + (end - start) / 2;
+                ReplaceTask t1 = new ReplaceTask(lines, pattern, replacement, start, mid, count);
+                ReplaceTask t2 = new ReplaceTask(lines, pattern, replacement, mid, end, count);
+                invokeAll(t1, t2);
+                TreeMap<Integer, String> changes = t1.join();
+                changes.putAll(t2.join());
+                return changes;
+            }
+            TreeMap<Integer, String> changes = new TreeMap<>();
+            Matcher matcher = pattern.matcher("");
+            for (int i = start; i < end; i++) {
+                String replaced = replace(matcher.reset(lines.apply(i)), replacement, count);
+                if (replaced != null) {
+                    changes.put(i, replaced);
+                }
+            }
+            return changes;
+        }
+
+        /**
+         * Replaces the matches found in the region of the matcher.
+         *
+         * @return the replaced text, or <code>null</code> if nothing matched
+         */
+        static String replace(Matcher matcher, String replacement, AtomicInteger count) {
+            if (!matcher.find()) {
+                return null;
+            }
+            StringBuffer sb = new StringBuffer();
+            do {
+                matcher.appendReplacement(sb, replacement);
+                count.incrementAndGet();
+            } while (matcher.find());
+            matcher.appendTail(sb);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Writes lines to a channel, encoding them with a single encoder and
+     * byte buffer.
+     */
+    protected static class LineWriter {
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final WritableByteChannel channel;
+        private final Charset charset;
+        private final CharsetEncoder encoder;
+        private final String eol;
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        private long written;
+
+        public LineWriter(WritableByteChannel channel, Charset charset, String eol) {
+            this.channel = channel;
+            this.charset = charset;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.eol = eol;
+        }
+
+        public void write(String line) throws IOException {
+            encode(CharBuffer.wrap(line), false);
+            writeEol();
+        }
+
+        public void writeEol() throws IOException {
+            encode(CharBuffer.wrap(eol), false);
+        }
+
+        /**
+         * Checks if lines encoded with the given charset and terminated
+         * by <code>\n</code> can be written as they are.
+         */
+        public boolean canCopy(Charset charset) {
+            return this.charset.equals(charset) && eol.equals("\n");
+        }
+
+        /**
+         * Writes already encoded lines.
+         */
+        public void write(ByteBuffer encoded) throws IOException {
+            drain();
+            while (encoded.hasRemaining()) {
+                written += channel.write(encoded);
+            }
+        }
+
+        public void flush() throws IOException {
+            encode(CharBuffer.allocate(0), true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        public long getWritten() {
+            return written;
+        }
+
+        private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+            while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                written += channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+
+    /**
+     * The lines of a file, stored as a piece table.  The lines of the
+     * original file are decoded on demand from its mapped content, using
+     * an index of the line starts, while new or modified lines are stored
+     * in a separate list.  The text is a sequence of pieces, each one
+     * referencing a range of lines from one of these two stores, so that
+     * editing a line does not copy the rest of the file.
+     *
+     * Lines are terminated by <code>\n</code> or <code>\r\n</code>, and
+     * the charset must be ASCII compatible.
+     */
+    protected static class PieceTable extends AbstractList<String> implements RandomAccess {
+        private static final int DECODED_CACHE_SIZE = 1024;
+        private static final int INDEX_CHUNK_SIZE = 1024 * 1024;
+
+        private final ByteBuffer original;
+        private final Charset charset;
+        private final List<String> added = new ArrayList<>();
+        private final List<Piece> pieces = new ArrayList<>();
+        private int[] ends;
+        private int size;
+        private final Map<Integer, String> decoded = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > DECODED_CACHE_SIZE;
+            }
+        };
+        // The line starts, published by the indexer every chunk
+        private volatile int[] starts = new int[1024];
+        private volatile int indexed;
+        private volatile boolean complete;
+        private int recorded;
+        private volatile IOException failure;
+
+        public PieceTable(ByteBuffer original, Charset charset) {
+            this.original = original;
+            this.charset = charset;
+            // Index the first chunk right away so that the first lines can
+            // be displayed, and the rest of the file in the background
+            int pos = index(0, Math.min(original.limit(), INDEX_CHUNK_SIZE));
+            if (!complete) {
+                Thread thread = new Thread(() -> {
+                    int p = pos;
+                    while (!complete) {
+                        p = index(p, Math.min(original.limit(), p + INDEX_CHUNK_SIZE));
+                    }
+                }, "nano-index");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        /**
+         * Records the starts of the lines beginning in the given range of
+         * bytes and publishes them.
+         *
+         * @return the position to index from next
+         */
+        private int index(int from, int to) {
+            int[] starts = this.starts;
+            int nb = recorded;
+            int limit = original.limit();
+            try {
+                for (int i = from; i < to; i++) {
+                    if (i == 0 || original.get(i - 1) == '\n') {
+                        if (nb >= starts.length - 2) {
+                            starts = Arrays.copyOf(starts, starts.length * 2);
+                        }
+                        starts[nb++] = i;
+                    }
+                }
+            } catch (Throwable t) {
+                // The file has been truncated, keep the lines indexed so far
+                to = limit;
+            }
+            recorded = nb;
+            synchronized (this) {
+                this.starts = starts;
+                if (to >= limit) {
+                    // The last line is the one starting at the last recorded
+                    // position, which ends at the end of the file
+                    starts[nb] = limit;
+                    this.indexed = nb;
+                    if (nb > 0) {
+                        pieces.add(new Piece(true, 0, nb));
+                    }
+                    this.size = nb;
+                    this.complete = true;
+                } else {
+                    // The last recorded line may not be terminated yet
+                    this.indexed = Math.max(nb - 1, 0);
+                }
+                notifyAll();
+            }
+            return to;
+        }
+        /**
+         * Checks if lines encoded with the given charset can be
+         * found by looking for new line bytes.
+         */
+        public static boolean isSupported(Charset charset) {
+            return Arrays.equals("\r\n".getBytes(charset), new byte[] { '\r', '\n' });
+        }
+
+        /**
+         * Returns the error raised when reading lines of the original file
+         * which has been truncated by another process, or <code>null</code>.
+         * Such lines are read as empty lines.
+         */
+        public IOException getFailure() {
+            return failure;
+        }
+
+        /**
+         * Checks if all the lines of the original file have been indexed.
+         */
+        public boolean isIndexed() {
+            return complete;
+        }
+
+        /**
+         * Checks if the given line exists, only waiting for the lines
+         * before it to be indexed.
+         */
+        public boolean hasLine(int index) {
+            awaitLine(index);
+            return index >= 0 && (!complete || index < size);
+        }
+
+        private void awaitLine(int index) {
+            if (!complete && indexed <= index) {
+                synchronized (this) {
+                    boolean interrupted = false;
+                    while (!complete && indexed <= index) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        private void awaitIndexed() {
+            awaitLine(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int size() {
+            awaitIndexed();
+            return size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (!complete) {
+                awaitLine(index);
+                if (!complete) {
+                    // The table can not have been modified yet
+                    checkIndex(index, indexed);
+                    return decode(index);
+                }
+            }
+            checkIndex(index, size);
+            int p = pieceAt(index);
+            Piece piece = pieces.get(p);
+            int idx = piece.start + index - (ends[p] - piece.count);
+            return piece.original ? decode(idx) : added.get(idx);
+        }
+
+        /**
+         * Returns the given line without caching it, so that lines can be
+         * read from several threads as long as the table is not modified.
+         */
+        public String peek(int index) {
+            awaitIndexed();
+            checkIndex(index, size);
+            int[] ends = this.ends != null ? this.ends : computeEnds();
+            int p = pieceAt(ends, index);
+            Piece piece = pieces.get(p);
+            int idx = piece.start + index - (ends[p] - piece.count);
+            return piece.original ? decodeLine(idx) : added.get(idx);
+        }
+
+        /**
+         * Replaces several lines at once, rebuilding the pieces only once.
+         */
+        public void setAll(SortedMap<Integer, String> lines) {
+            awaitIndexed();
+            if (lines.isEmpty()) {
+                return;
+            }
+            checkIndex(lines.firstKey(), size);
+            checkIndex(lines.lastKey(), size);
+            List<Piece> result = new ArrayList<>(pieces.size() + 2 * lines.size());
+            Iterator<Map.Entry<Integer, String>> it = lines.entrySet().iterator();
+            Map.Entry<Integer, String> next = it.next();
+            int index = 0;
+            for (Piece piece : pieces) {
+                int off = 0;
+                while (next != null && next.getKey() < index + piece.count) {
+                    int idx = next.getKey() - index;
+                    if (piece.original) {
+                        if (idx > off) {
+                            append(result, new Piece(true, piece.start + off, idx - off));
+                        }
+                        added.add(next.getValue());
+                        append(result, new Piece(false, added.size() - 1, 1));
+                        off = idx + 1;
+                    } else {
+                        // Added lines are only referenced by one piece
+                        added.set(piece.start + idx, next.getValue());
+                    }
+                    next = it.hasNext() ? it.next() : null;
+                }
+                if (off < piece.count) {
+                    append(result, new Piece(piece.original, piece.start + off, piece.count - off));
+                }
+                index += piece.count;
+            }
+            pieces.clear();
+            pieces.addAll(result);
+            ends = null;
+        }
+
+        /**
+         * Writes the lines, copying the bytes of the unmodified lines of
+         * the original file when they do not need to be encoded again.
+         */
+        public void write(LineWriter writer) throws IOException {
+            awaitIndexed();
+            if (failure != null) {
+                throw failure;
+            }
+            try {
+                doWrite(writer);
+            } catch (InternalError e) {
+                failure = truncated(e);
+            }
+            if (failure != null) {
+                // Do not write the lines which could not be read
+                throw failure;
+            }
+        }
+
+        private void doWrite(LineWriter writer) throws IOException {
+            boolean copy = writer.canCopy(charset);
+            for (Piece piece : pieces) {
+                int start = piece.original ? starts[piece.start] : 0;
+                int end = piece.original ? starts[piece.start + piece.count] : 0;
+                if (piece.original && copy && indexOf(original, '\r', start, end) < 0) {
+                    ByteBuffer bytes = original.duplicate();
+                    bytes.limit(end);
+                    bytes.position(start);
+                    writer.write(bytes);
+                    if (end == start || original.get(end - 1) != '\n') {
+                        // The last line of a file without a final new line
+                        writer.writeEol();
+                    }
+                } else {
+                    for (int i = 0; i < piece.count; i++) {
+                        writer.write(piece.original ? decodeLine(piece.start + i) : added.get(piece.start + i));
+                    }
+                }
+            }
+        }
+
+        private static int indexOf(ByteBuffer buffer, int b, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static void append(List<Piece> pieces, Piece piece) {
+            Piece last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+            if (last != null && !last.original && !piece.original && last.start + last.count == piece.start) {
+                // Merge consecutive added lines
+                pieces.set(pieces.size() - 1, new Piece(false, last.start, last.count + piece.count));
+            } else {
+                pieces.add(piece);
+            }
+        }
+
+        @Override
+        public String set(int index, String element) {
+            awaitIndexed();
+            checkIndex(index, size);
+            int p = pieceAt(index);
+            Piece piece = pieces.get(p);
+            int off = index - (ends[p] - piece.count);
+            if (!piece.original) {
+                // Added lines are only referenced by one piece
+                return added.set(piece.start + off, element);
+            }
+            String old = decode(piece.start + off);
+            added.add(element);
+            replace(p, piece, off, 1, new Piece(false, added.size() - 1, 1));
+            return old;
+        }
+
+        @Override
+        public void add(int index, String element) {
+            awaitIndexed();
+            checkIndex(index, size + 1);
+            added.add(element);
+            Piece piece = new Piece(false, added.size() - 1, 1);
+            if (index == size) {
+                Piece last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+                if (last != null && !last.original && last.start + last.count == piece.start) {
+                    pieces.set(pieces.size() - 1, new Piece(false, last.start, last.count + 1));
+                } else {
+                    pieces.add(piece);
+                }
+                ends = null;
+            } else {
+                int p = pieceAt(index);
+                Piece cur = pieces.get(p);
+                replace(p, cur, index - (ends[p] - cur.count), 0, piece);
+            }
+            size++;
+            modCount++;
+        }
+
+        @Override
+        public String remove(int index) {
+            awaitIndexed();
+            checkIndex(index, size);
+            int p = pieceAt(index);
+            Piece piece = pieces.get(p);
+            int off = index - (ends[p] - piece.count);
+            String old;
+            if (piece.original) {
+                old = decode(piece.start + off);
+            } else {
+                old = added.set(piece.start + off, null);
+            }
+            replace(p, piece, off, 1, null);
+            size--;
+            modCount++;
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            awaitIndexed();
+            pieces.clear();
+            added.clear();
+            ends = null;
+            size = 0;
+            modCount++;
+        }
+
+        /**
+         * Replaces <code>count</code> lines of the given piece starting at
+         * <code>off</code> with the lines of another piece.
+         */
+        private void replace(int p, Piece piece, int off, int count, Piece with) {
+            List<Piece> list = new ArrayList<>(3);
+            if (off > 0) {
+                list.add(new Piece(piece.original, piece.start, off));
+            }
+            if (with != null) {
+                Piece prev = list.isEmpty() && p > 0 ? pieces.get(p - 1) : null;
+                if (prev != null && !prev.original && !with.original && prev.start + prev.count == with.start) {
+                    // Merge consecutive added lines
+                    pieces.set(p - 1, new Piece(false, prev.start, prev.count + with.count));
+                } else {
+                    list.add(with);
+                }
+            }
+            if (off + count < piece.count) {
+                list.add(new Piece(piece.original, piece.start + off + count, piece.count - off - count));
+            }
+            pieces.remove(p);
+            pieces.addAll(p, list);
+            ends = null;
+        }
+
+        private int pieceAt(int index) {
+            if (ends == null) {
+                ends = computeEnds();
+            }
+            return pieceAt(ends, index);
+        }
+
+        private int[] computeEnds() {
+            int[] ends = new int[pieces.size()];
+            int end = 0;
+            for (int i = 0; i < ends.length; i++) {
+                end += pieces.get(i).count;
+                ends[i] = end;
+            }
+            return ends;
+        }
+
+        private static int pieceAt(int[] ends, int index) {
+            int p = Arrays.binarySearch(ends, index);
+            return p >= 0 ? p + 1 : -p - 1;
+        }
+
+        private String decode(int line) {
+            String str = decoded.get(line);
+            if (str == null) {
+                str = decodeLine(line);
+                decoded.put(line, str);
+            }
+            return str;
+        }
+
+        private String decodeLine(int line) {
+            int[] starts = this.starts;
+            int start = starts[line];
+            int end = starts[line + 1];
+            byte[] bytes;
+            try {
+                if (end > start && original.get(end - 1) == '\n') {
+                    end--;
+                }
+                if (end > start && original.get(end - 1) == '\r') {
+                    end--;
+                }
+                bytes = new byte[end - start];
+                ByteBuffer buf = original.duplicate();
+                buf.position(start);
+                buf.get(bytes);
+            } catch (InternalError e) {
+                failure = truncated(e);
+                return "";
+            }
+            return new String(bytes, charset);
+        }
+
+        private static IOException truncated(InternalError e) {
+            return new IOException("file truncated on disk, some lines could not be read", e);
+        }
+
+        private static void checkIndex(int index, int size) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+
+        private static class Piece {
+            final boolean original;
+            final int start;
+            final int count;
+
+            Piece(boolean original, int start, int count) {
+                this.original = original;
+                this.start = start;
+                this.count = count;
+            }
+        }
+    }
+
+    /**
+     * Highlights the lines of a buffer.
+     *
+     * The rules spanning several lines make the highlighting of a line
+     * depend on the lines before it, so the rule open at the start of each
+     * line is remembered.  When lines are modified, these states are only
+     * computed again from the first modified line until they are the same
+     * as before.  The highlighted lines are cached too.
+     */
+    protected static class SyntaxHighlighter {
+        private static final int HIGHLIGHTED_CACHE_SIZE = 1024;
+        private static final int UNKNOWN = -2;
+
+        private final List<HighlightRule> rules = new ArrayList<>();
+        private final List<Matcher> matchers = new ArrayList<>();
+        private final List<Matcher> endMatchers = new ArrayList<>();
+        private boolean multiline;
+
+        // The index of the rule open at the start of each line, or -1.  The
+        // first valid states are up to date, the following ones were computed
+        // before some lines were modified and are only reused if the state
+        // at the start of the modified lines has not changed.
+        private int[] states = new int[] { -1 };
+        private int count = 1;
+        private int valid = 1;
+        private boolean changed;
+        private final TreeSet<Integer> modified = new TreeSet<>();
+
+        private final Map<Integer, Highlighted> highlighted = new LinkedHashMap<Integer, Highlighted>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Highlighted> eldest) {
+                return size() > HIGHLIGHTED_CACHE_SIZE;
+            }
+        };
 
         public SyntaxHighlighter() {}
 
         public void addRule(AttributedStyle style, Pattern pattern) {
             rules.add(new HighlightRule(style, pattern));
+            matchers.add(pattern.matcher(""));
+            endMatchers.add(null);
         }
 
         public void addRule(AttributedStyle style, Pattern start, Pattern end) {
             rules.add(new HighlightRule(style, start, end));
+            matchers.add(start.matcher(""));
+            endMatchers.add(end.matcher(""));
+            multiline = true;
         }
 
-        public void reset() {
-            ruleStartId = 0;
+        /**
+         * Returns the given line highlighted.
+         */
+        public AttributedString highlight(List<String> lines, int line) {
+            String text = lines.get(line);
+            if (rules.isEmpty()) {
+                return new AttributedString(text);
+            }
+            int state = multiline ? state(lines, line) : -1;
+            Highlighted h = highlighted.get(line);
+            if (h == null || h.state != state || !h.text.equals(text)) {
+                h = new Highlighted(text, state, style(text, state));
+                highlighted.put(line, h);
+            }
+            return h.styled;
         }
 
-        public AttributedString highlightNextLine(String line) {
-            return highlightNextLine(new AttributedString(line));
+        /**
+         * Records that the lines starting at <code>line</code> have been
+         * replaced with <code>added</code> new lines.
+         */
+        public void linesChanged(int line, int removed, int added) {
+            if (!multiline) {
+                return;
+            }
+            if (changed && valid > line) {
+                // The states following the valid ones were not computed again
+                modified.add(valid - 1);
+            }
+            int delta = added - removed;
+            // The state at the start of the line following the modified ones
+            // may have changed, so this line is considered modified too when
+            // lines have only been removed
+            int nb = Math.max(added, 1);
+            int next = line + removed + nb - added;
+            if (next < count && delta == 0) {
+                Arrays.fill(states, line + 1, line + nb, UNKNOWN);
+            } else if (next < count) {
+                int[] newStates = new int[count + delta];
+                System.arraycopy(states, 0, newStates, 0, line + 1);
+                Arrays.fill(newStates, line + 1, line + nb, UNKNOWN);
+                System.arraycopy(states, next, newStates, line + nb, count - next);
+                states = newStates;
+                count += delta;
+            } else {
+                count = Math.min(count, line + 1);
+            }
+            if (delta != 0) {
+                List<Integer> shifted = new ArrayList<>();
+                for (Integer l : modified.tailSet(line + removed)) {
+                    shifted.add(l + delta);
+                }
+                modified.tailSet(line).clear();
+                modified.addAll(shifted);
+            }
+            for (int i = 0; i < nb; i++) {
+                modified.add(line + i);
+            }
+            if (valid > line) {
+                valid = line + 1;
+                changed = false;
+            }
+            valid = Math.min(valid, count);
         }
 
-        public AttributedString highlightNextLine(AttributedString line) {
-            if (rules.isEmpty()) {
-                return line;
+        /**
+         * Returns the index of the rule open at the start of the given line.
+         */
+        private int state(List<String> lines, int line) {
+            while (valid <= line) {
+                int v = valid;
+                if (!changed && v < count && !modified.contains(v - 1)) {
+                    // The previous states are the same as before, so the
+                    // next ones are too until the next modified line
+                    Integer next = modified.ceiling(v);
+                    valid = next != null ? Math.min(next + 1, count) : count;
+                    continue;
+                }
+                int state = scan(lines.get(v - 1), states[v - 1], null);
+                if (v == count) {
+                    if (count == states.length) {
+                        states = Arrays.copyOf(states, states.length * 2);
+                    }
+                    states[count++] = state;
+                    changed = true;
+                } else {
+                    changed = states[v] != state;
+                    states[v] = state;
+                }
+                modified.remove(v - 1);
+                valid = v + 1;
             }
-            AttributedStringBuilder asb = new AttributedStringBuilder();
-            AttributedStyle as = new AttributedStyle(AttributedStyle.DEFAULT);
-            asb.append(line);
-            for (int i = ruleStartId; i < rules.size(); i++) {
-                HighlightRule rule = rules.get(i);
-                switch (rule.getType()) {
-                case PATTERN:
-                    asb.styleMatches(rule.getPattern(), rule.getStyle());
-                    break;
-                case START_END:
-                    boolean done = false;
-                    Matcher start = rule.getStart().matcher(asb.toAttributedString());
-                    Matcher end = rule.getEnd().matcher(asb.toAttributedString());
-                    while (!done) {
-                        AttributedStringBuilder a = new AttributedStringBuilder();
-                        if (ruleStartId == i) { // first rule should never be type
-                                                // START_END or we will fail here!
-                            if (end.find()) {
-                                a.append(asb.columnSubSequence(0, end.end()),rule.getStyle());
-                                a.append(asb.columnSubSequence(end.end(), asb.length()));
-                                ruleStartId = 0;
-                            } else {
-                                a.append(asb, rule.getStyle());
-                                done = true;
-                            }
-                            asb = a;
-                        } else {
-                            if (start.find()) {
-                                a.append(asb.columnSubSequence(0, start.start()));
-                                if (end.find()) {
-                                    a.append(asb.columnSubSequence(start.start(), end.end()), rule.getStyle());
-                                    a.append(asb.columnSubSequence(end.end(), asb.length()));
-                                } else {
-                                    ruleStartId = i;
-                                    a.append(asb.columnSubSequence(start.start(),asb.length()), rule.getStyle());
-                                    done = true;
-                                }
-                                asb = a;
-                            } else {
-                                done = true;
-                            }
+            return states[line];
+        }
+
+        /**
+         * Finds the parts of the line covered by the rules spanning several
+         * lines, given the rule open at its start.
+         *
+         * @return the rule open at the end of the line, or -1
+         */
+        private int scan(String text, int state, List<int[]> regions) {
+            int pos = 0;
+            int length = text.length();
+            while (pos <= length) {
+                int start = pos;
+                if (state < 0) {
+                    // Find the first start, the last rule taking precedence
+                    Matcher first = null;
+                    for (int i = 0; i < rules.size(); i++) {
+                        Matcher m = endMatchers.get(i) != null ? matchers.get(i).reset(text) : null;
+                        if (m != null && m.find(pos) && (first == null || m.start() <= first.start())) {
+                            first = m;
+                            state = i;
                         }
                     }
+                    if (first == null) {
+                        break;
+                    }
+                    start = first.start();
+                    pos = first.end();
+                }
+                Matcher end = endMatchers.get(state).reset(text);
+                if (end.find(pos)) {
+                    if (regions != null) {
+                        regions.add(new int[] { state, start, end.end() });
+                    }
+                    pos = Math.max(end.end(), start + 1);
+                    state = -1;
+                } else {
+                    if (regions != null) {
+                        regions.add(new int[] { state, start, length });
+                    }
                     break;
                 }
             }
+            return state;
+        }
+
+        private AttributedString style(String text, int state) {
+            int[] codes = new int[text.length()];
+            List<int[]> regions = new ArrayList<>();
+            if (multiline) {
+                scan(text, state, regions);
+            }
+            // Later rules override the styles of the previous ones
+            for (int i = 0; i < rules.size(); i++) {
+                HighlightRule rule = rules.get(i);
+                int style = rule.getStyle().getStyle();
+                int mask = rule.getStyle().getMask();
+                if (rule.getType() == HighlightRule.RuleType.PATTERN) {
+                    Matcher m = matchers.get(i).reset(text);
+                    while (m.find()) {
+                        apply(codes, m.start(), m.end(), style, mask);
+                    }
+                } else {
+                    for (int[] region : regions) {
+                        if (region[0] == i) {
+                            apply(codes, region[1], region[2], style, mask);
+                        }
+                    }
+                }
+            }
+            AttributedStringBuilder asb = new AttributedStringBuilder(text.length());
+            int start = 0;
+            for (int i = 1; i <= codes.length; i++) {
+                if (i == codes.length || codes[i] != codes[start]) {
+                    asb.style(new AttributedStyle(codes[start], 0));
+                    asb.append(text, start, i);
+                    start = i;
+                }
+            }
             return asb.toAttributedString();
         }
 
+        private static void apply(int[] codes, int start, int end, int style, int mask) {
+            for (int i = start; i < end; i++) {
+                codes[i] = (codes[i] & ~mask) | style;
+            }
+        }
+
+        private static class Highlighted {
+            final String text;
+            final int state;
+            final AttributedString styled;
+
+            Highlighted(String text, int state, AttributedString styled) {
+                this.text = text;
+                this.state = state;
+                this.styled = styled;
+            }
+        }
+
         private static class HighlightRule {
             public enum RuleType {PATTERN, START_END};
             private RuleType type;
@@ -1478,15 +2670,20 @@ public class Nano {
                 status.suspend();
             }
             buffer.open();
-            if (buffer.file != null) {
-                setMessage("Read " + buffer.lines.size() + " lines");
-            }
 
             display.clear();
             display.reset();
             display.resize(size.getRows(), size.getColumns());
             prevHandler = terminal.handle(Signal.WINCH, this::handle);
 
+            if (buffer.file != null && !buffer.isIndexed()) {
+                // Display the first lines while the file is being indexed
+                setMessage("Reading " + buffer.file + "...");
+                display();
+            }
+            if (buffer.file != null) {
+                setMessage("Read " + buffer.lines.size() + " lines");
+            }
             display();
 
             while (true) {
@@ -1584,6 +2781,9 @@ public class Nano {
                     case SEARCH:
                         search();
                         break;
+                    case REPLACE:
+                        replace();
+                        break;
                     case NEXT_SEARCH:
                         buffer.nextSearch();
                         break;
@@ -1635,6 +2835,9 @@ public class Nano {
                         break;
                 }
                 display();
+                if (buffer.checkReadFailure()) {
+                    display();
+                }
             }
         } finally {
             if (mouseSupport) {
@@ -1777,56 +2980,119 @@ public class Nano {
         } else if (!Files.exists(newPath)) {
             newPath.toFile().createNewFile();
         }
-        Path t = Files.createTempFile("jline-", ".temp");
-        try (OutputStream os = Files.newOutputStream(t, StandardOpenOption.WRITE,
-                                                        StandardOpenOption.TRUNCATE_EXISTING,
-                                                        StandardOpenOption.CREATE)) {
-            if (writeMode == WriteMode.APPEND) {
-                if (Files.isReadable(newPath)) {
-                    Files.copy(newPath, os);
-                }
+        Path backup = newPath.resolveSibling(newPath.getFileName().toString() + "~");
+        long startTime = System.nanoTime();
+        long written;
+        try {
+            if (buffer.isMappedFileModified()) {
+                // The unmodified lines would be copied from the new content
+                setMessage("Error writing " + name + ": File was modified since you opened it");
+                return false;
             }
-            Writer w = new OutputStreamWriter(os, buffer.charset);
-            for (int i = 0; i < buffer.lines.size(); i++) {
-                w.write(buffer.lines.get(i));
-                switch (buffer.format) {
-                    case UNIX:
-                        w.write("\n");
-                        break;
-                    case DOS:
-                        w.write("\r\n");
-                        break;
-                    case MAC:
-                        w.write("\r");
-                        break;
+            if (writeMode == WriteMode.APPEND) {
+                if (writeBackup) {
+                    Files.copy(newPath, backup, StandardCopyOption.REPLACE_EXISTING);
                 }
-            }
-            w.flush();
-            if (writeMode == WriteMode.PREPEND) {
-                if (Files.isReadable(newPath)) {
-                    Files.copy(newPath, os);
+                try (FileChannel channel = FileChannel.open(newPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    written = writeLines(channel);
+                    if (syncOnSave) {
+                        channel.force(true);
+                    }
                 }
+                buffer.mappedFileAppended();
+            } else {
+                written = writeAndReplace(newPath, backup);
             }
-            if (writeBackup) {
-                Files.move(newPath, newPath.resolveSibling(newPath.getFileName().toString() + "~"), StandardCopyOption.REPLACE_EXISTING);
-            }
-            Files.move(t, newPath, StandardCopyOption.REPLACE_EXISTING);
             if (writeMode == WriteMode.WRITE) {
                 buffer.file = name;
                 buffer.dirty = false;
             }
-            setMessage("Wrote " + buffer.lines.size() + " lines");
+            String msg = "Wrote " + buffer.lines.size() + " lines";
+            long elapsed = System.nanoTime() - startTime;
+            if (elapsed > TimeUnit.MILLISECONDS.toNanos(SAVE_THROUGHPUT_DELAY)) {
+                msg += String.format(" (%.1f MB/s)", written * 1000.0 / elapsed);
+            }
+            setMessage(msg);
             return true;
         } catch (IOException e) {
             setMessage("Error writing " + name + ": " + e.toString());
             return false;
         } finally {
-            Files.deleteIfExists(t);
             writeMode = WriteMode.WRITE;
         }
     }
 
+    /**
+     * Writes the buffer to a temporary file next to the given one, so that
+     * it can be renamed instead of copied, and replaces the file with it.
+     *
+     * @return the number of bytes written
+     */
+    private long writeAndReplace(Path path, Path backup) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path t = Files.createTempFile(dir, "." + path.getFileName(), ".tmp");
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(t, StandardOpenOption.WRITE)) {
+                written = writeLines(channel);
+                if (writeMode == WriteMode.PREPEND && Files.isReadable(path)) {
+                    try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                        long size = in.size();
+                        for (long pos = 0; pos < size; ) {
+                            pos += in.transferTo(pos, size - pos, channel);
+                        }
+                        written += size;
+                    }
+                }
+                if (syncOnSave) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.setPosixFilePermissions(t, Files.getPosixFilePermissions(path));
+            } catch (UnsupportedOperationException | IOException e) {
+                // Keep the default permissions
+            }
+            if (writeBackup) {
+                Files.move(path, backup, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(t, path, StandardCopyOption.REPLACE_EXISTING);
+            return written;
+        } finally {
+            Files.deleteIfExists(t);
+        }
+    }
+
+    private long writeLines(WritableByteChannel channel) throws IOException {
+        String eol;
+        switch (buffer.format) {
+            case DOS:
+                eol = "\r\n";
+                break;
+            case MAC:
+                eol = "\r";
+                break;
+            default:
+                eol = "\n";
+                break;
+        }
+        LineWriter writer = new LineWriter(channel, buffer.charset, eol);
+        if (buffer.lines instanceof PieceTable) {
+            ((PieceTable) buffer.lines).write(writer);
+        } else {
+            for (String line : buffer.lines) {
+                writer.write(line);
+            }
+        }
+        writer.flush();
+        return writer.getWritten();
+    }
+
     private Operation getYNC(String message) {
+        return getYNC(message, false);
+    }
+
+    private Operation getYNC(String message, boolean andAll) {
         String oldEditMessage = editMessage;
         String oldEditBuffer = editBuffer.toString();
         LinkedHashMap<String, String> oldShortcuts = shortcuts;
@@ -1837,8 +3103,14 @@ public class Nano {
             yncKeyMap.bind(Operation.YES, "y", "Y");
             yncKeyMap.bind(Operation.NO, "n", "N");
             yncKeyMap.bind(Operation.CANCEL, ctrl('C'));
+            if (andAll) {
+                yncKeyMap.bind(Operation.ALL, "a", "A");
+            }
             shortcuts = new LinkedHashMap<>();
             shortcuts.put(" Y", "Yes");
+            if (andAll) {
+                shortcuts.put(" A", "All");
+            }
             shortcuts.put(" N", "No");
             shortcuts.put("^C", "Cancel");
             display();
@@ -2191,6 +3463,14 @@ public class Nano {
     }
 
     void search() throws IOException {
+        search(false);
+    }
+
+    void replace() throws IOException {
+        search(true);
+    }
+
+    private void search(boolean replace) throws IOException {
         KeyMap<Operation> searchKeyMap = new KeyMap<>();
         searchKeyMap.setUnicode(Operation.INSERT);
 //        searchKeyMap.setNomatch(Operation.INSERT);
@@ -2204,6 +3484,7 @@ public class Nano {
         searchKeyMap.bind(Operation.CASE_SENSITIVE, alt('c'));
         searchKeyMap.bind(Operation.BACKWARDS, alt('b'));
         searchKeyMap.bind(Operation.REGEXP, alt('r'));
+        searchKeyMap.bind(Operation.REPLACE, ctrl('R'));
         searchKeyMap.bind(Operation.ACCEPT, "\r");
         searchKeyMap.bind(Operation.CANCEL, ctrl('C'));
         searchKeyMap.bind(Operation.FIRST_LINE, ctrl('Y'));
@@ -2214,7 +3495,7 @@ public class Nano {
         searchKeyMap.bind(Operation.UP, key(terminal, Capability.key_up));
         searchKeyMap.bind(Operation.DOWN, key(terminal, Capability.key_down));
 
-        editMessage = getSearchMessage();
+        editMessage = getSearchMessage(replace);
         editBuffer.setLength(0);
         String currentBuffer = "";
         int curPos = editBuffer.length();
@@ -2259,6 +3540,9 @@ public class Nano {
                     case REGEXP:
                         searchRegexp = !searchRegexp;
                         break;
+                    case REPLACE:
+                        replace = !replace;
+                        break;
                     case CANCEL:
                         return;
                     case ACCEPT:
@@ -2272,7 +3556,16 @@ public class Nano {
                                 searchTerms.add(searchTerm);
                             }
                             searchTermId = -1;
-                            buffer.nextSearch();
+                            if (!replace) {
+                                buffer.nextSearch();
+                            } else {
+                                String replacement = getReplacement();
+                                if (replacement != null) {
+                                    buffer.replace(replacement);
+                                } else {
+                                    setMessage("Cancelled");
+                                }
+                            }
                         }
                         return;
                     case HELP:
@@ -2294,7 +3587,7 @@ public class Nano {
                         curPos = editInputBuffer(op, curPos);
                         break;
                }
-                editMessage = getSearchMessage();
+                editMessage = getSearchMessage(replace);
                 display(curPos);
             }
         } finally {
@@ -2303,9 +3596,48 @@ public class Nano {
         }
     }
 
-    private String getSearchMessage() {
+    /**
+     * Reads the replacement of the search term.
+     *
+     * @return the replacement, or <code>null</code> if cancelled
+     */
+    private String getReplacement() {
+        KeyMap<Operation> replaceKeyMap = new KeyMap<>();
+        replaceKeyMap.setUnicode(Operation.INSERT);
+        for (char i = 32; i < 256; i++) {
+            replaceKeyMap.bind(Operation.INSERT, Character.toString(i));
+        }
+        replaceKeyMap.bind(Operation.BACKSPACE, del());
+        replaceKeyMap.bind(Operation.ACCEPT, "\r");
+        replaceKeyMap.bind(Operation.CANCEL, ctrl('C'));
+        replaceKeyMap.bind(Operation.RIGHT, key(terminal, Capability.key_right));
+        replaceKeyMap.bind(Operation.LEFT, key(terminal, Capability.key_left));
+
+        editMessage = "Replace with: ";
+        editBuffer.setLength(0);
+        int curPos = editBuffer.length();
+        this.shortcuts = new LinkedHashMap<>();
+        this.shortcuts.put("^C", "Cancel");
+        display(curPos);
+        while (true) {
+            Operation op = readOperation(replaceKeyMap);
+            switch (op) {
+                case CANCEL:
+                    return null;
+                case ACCEPT:
+                    editMessage = null;
+                    return editBuffer.toString();
+                default:
+                    curPos = editInputBuffer(op, curPos);
+                    break;
+            }
+            display(curPos);
+        }
+    }
+
+    private String getSearchMessage(boolean replace) {
         StringBuilder sb = new StringBuilder();
-        sb.append("Search");
+        sb.append(replace ? "Search (to replace)" : "Search");
         if (searchCaseSensitive) {
             sb.append(" [Case Sensitive]");
         }
@@ -2324,6 +3656,19 @@ public class Nano {
         return sb.toString();
     }
 
+    /**
+     * Returns the search pattern, which is only compiled again when the
+     * search term or options change.
+     */
+    Pattern getSearchPattern() {
+        int flags = (searchCaseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)
+                | (searchRegexp ? 0 : Pattern.LITERAL);
+        if (searchPattern == null || !searchPattern.pattern().equals(searchTerm) || searchPattern.flags() != flags) {
+            searchPattern = Pattern.compile(searchTerm, flags);
+        }
+        return searchPattern;
+    }
+
     String computeCurPos() {
         int chari = 0;
         int chart = 0;
@@ -2790,6 +4135,7 @@ public class Nano {
         TO_FILES,
         YES,
         NO,
+        ALL,
         NEW_BUFFER,
         EXECUTE,
         NEXT_SEARCH,
@@ -9,12 +9,26 @@
 package org.jline.builtins;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 public interface Source {
@@ -23,15 +37,41 @@ public interface Source {
 
     InputStream read() throws IOException;
 
+    /**
+     * Returns the number of lines of this source, or <code>null</code>
+     * if it is unknown or still being computed.
+     *
+     * @return the number of lines
+     */
     Long lines();
 
+    /**
+     * Returns the number of lines counted so far while
+     * {@link #lines()} is being computed in the background.
+     *
+     * @return the number of lines counted so far, or <code>null</code>
+     */
+    default Long linesCounted() {
+        return null;
+    }
+
     class URLSource implements Source {
         final URL url;
         final String name;
+        final LineCounter counter;
 
         public URLSource(URL url, String name) {
             this.url = Objects.requireNonNull(url);
             this.name = name;
+            LineCounter counter = null;
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    counter = new LineCounter(Paths.get(url.toURI()));
+                } catch (Exception e) {
+                    // Not a local file
+                }
+            }
+            this.counter = counter;
         }
 
         @Override
@@ -46,18 +86,19 @@ public interface Source {
 
         @Override
         public Long lines() {
-            Long out = null;
-            try {
-                out = Files.lines(new File(url.toURI()).toPath()).count();
-            } catch (Exception e) {                
-            }
-            return out;
+            return counter != null ? counter.lines() : null;
+        }
+
+        @Override
+        public Long linesCounted() {
+            return counter != null ? counter.counted() : null;
         }
     }
 
     class PathSource implements Source {
         final Path path;
         final String name;
+        final LineCounter counter;
 
         public PathSource(File file, String name) {
             this(Objects.requireNonNull(file).toPath(), name);
@@ -66,6 +107,186 @@ public interface Source {
         public PathSource(Path path, String name) {
             this.path = Objects.requireNonNull(path);
             this.name = name;
+            this.counter = new LineCounter(path);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public InputStream read() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public Long lines() {
+            return counter.lines();
+        }
+
+        @Override
+        public Long linesCounted() {
+            return counter.counted();
+        }
+    }
+
+    /**
+     * Counts the lines of a file in a background thread.  The count is
+     * cached, and when the file grows only the appended bytes are scanned.
+     * A file which shrinks is counted again from the start.
+     */
+    class LineCounter {
+        static final int CHUNK_SIZE = 1 << 26;
+
+        final Path path;
+
+        // Guarded by this
+        private long size;
+        private FileTime lastModified;
+        private Object fileKey;
+        private long scanned;
+        private long newLines;
+        private boolean eol = true;
+        private boolean counting;
+        private boolean failed;
+
+        public LineCounter(Path path) {
+            this.path = Objects.requireNonNull(path);
+        }
+
+        /**
+         * Returns the number of lines of the file if it has been counted
+         * since the file was last modified, or starts counting them in
+         * the background and returns <code>null</code>.
+         *
+         * @return the number of lines, or <code>null</code>
+         */
+        public synchronized Long lines() {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+            boolean sameFile = Objects.equals(attrs.fileKey(), fileKey);
+            if (!counting && sameFile && scanned == attrs.size() && attrs.lastModifiedTime().equals(lastModified)) {
+                return lines(scanned, newLines, eol);
+            }
+            if (!counting && failed && sameFile && size == attrs.size() && attrs.lastModifiedTime().equals(lastModified)) {
+                // Do not try again until the file changes
+                return null;
+            }
+            if (!counting) {
+                // Only a file which has grown is assumed to have been
+                // appended to, a rotated or replaced one is counted again
+                if (attrs.size() <= scanned || !sameFile) {
+                    scanned = 0;
+                    newLines = 0;
+                    eol = true;
+                }
+                size = attrs.size();
+                lastModified = attrs.lastModifiedTime();
+                fileKey = attrs.fileKey();
+                counting = true;
+                failed = false;
+                Thread thread = new Thread(this::count, "Source line counter " + path);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of lines counted so far.
+         *
+         * @return the number of lines counted so far
+         */
+        public synchronized long counted() {
+            return lines(scanned, newLines, eol);
+        }
+
+        private static long lines(long scanned, long newLines, boolean eol) {
+            return scanned > 0 && !eol ? newLines + 1 : newLines;
+        }
+
+        private void count() {
+            long pos, end, newLines;
+            boolean eol;
+            synchronized (this) {
+                pos = scanned;
+                end = size;
+                newLines = this.newLines;
+                eol = this.eol;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (pos < end) {
+                    ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(CHUNK_SIZE, end - pos));
+                    for (int i = 0, limit = chunk.limit(); i < limit; i++) {
+                        if (chunk.get(i) == '\n') {
+                            newLines++;
+                        }
+                    }
+                    pos += chunk.limit();
+                    eol = chunk.get(chunk.limit() - 1) == '\n';
+                    synchronized (this) {
+                        this.scanned = pos;
+                        this.newLines = newLines;
+                        this.eol = eol;
+                    }
+                }
+            } catch (IOException | InternalError e) {
+                // The file is unreadable, or has been truncated or removed:
+                // count again from the start once its size or date changes
+                synchronized (this) {
+                    this.scanned = 0;
+                    this.newLines = 0;
+                    this.eol = true;
+                    this.failed = true;
+                }
+            } finally {
+                synchronized (this) {
+                    counting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * A source for regular files which maps the file in memory instead of
+     * reading it sequentially.  The offsets of the lines are indexed in a
+     * background thread, so that any line can be decoded on demand without
+     * holding the content of the file on the heap.
+     *
+     * Lines are terminated by <code>\n</code> or <code>\r\n</code> and
+     * are decoded using the given charset, which must be ASCII compatible.
+     */
+    class MappedSource implements Source {
+        static final int CHUNK_SIZE = 1 << 30;
+
+        final Path path;
+        final String name;
+        final Charset charset;
+        final int chunkSize;
+        private LineIndex index;
+
+        public MappedSource(File file, String name) {
+            this(Objects.requireNonNull(file).toPath(), name);
+        }
+
+        public MappedSource(Path path, String name) {
+            this(path, name, Charset.defaultCharset());
+        }
+
+        public MappedSource(Path path, String name, Charset charset) {
+            this(path, name, charset, CHUNK_SIZE);
+        }
+
+        MappedSource(Path path, String name, Charset charset, int chunkSize) {
+            this.path = Objects.requireNonNull(path);
+            this.name = name;
+            this.charset = Objects.requireNonNull(charset);
+            this.chunkSize = chunkSize;
         }
 
         @Override
@@ -78,14 +299,368 @@ public interface Source {
             return Files.newInputStream(path);
         }
 
+        /**
+         * Returns the number of lines in the file, or <code>null</code>
+         * if the file is still being indexed.
+         */
         @Override
         public Long lines() {
-            Long out = null;
             try {
-                out = Files.lines(path).count();
-            } catch (Exception e) {                
+                return index().lines(false);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Long linesCounted() {
+            try {
+                return index().counted();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Maps the file and starts indexing its lines.  If the file has
+         * already been opened, the existing index is kept unless the file
+         * has been modified since.  When the file has grown, only the new
+         * lines are indexed, while a file which has been truncated or
+         * replaced, for example when logs are rotated, is indexed again.
+         *
+         * @return <code>true</code> if the file has been (re)indexed
+         * @throws IOException if the file can not be mapped
+         */
+        public synchronized boolean open() throws IOException {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                throw new FileNotFoundException(path.toString());
+            }
+            if (index != null && index.isCurrent(attrs)) {
+                return false;
+            }
+            if (index == null || !index.grow(attrs)) {
+                if (index != null) {
+                    index.close();
+                }
+                index = new LineIndex(path, attrs, chunkSize);
+            }
+            return true;
+        }
+
+        /**
+         * Returns the given line, waiting for the file to be indexed
+         * up to this line if needed.
+         *
+         * @param line the zero-based line number
+         * @return the line, or <code>null</code> if the file has less lines
+         * @throws IOException if an error occurs
+         */
+        public String line(int line) throws IOException {
+            return index().line(line, charset);
+        }
+
+        /**
+         * Returns the given range of lines, which is more efficient than
+         * accessing the lines one by one.
+         *
+         * @param from the zero-based number of the first line
+         * @param to the zero-based number of the line after the last one
+         * @return the lines, which are less than requested at the end of the file
+         * @throws IOException if an error occurs
+         */
+        public List<String> readLines(int from, int to) throws IOException {
+            return index().lines(from, to, charset);
+        }
+
+        /**
+         * Returns the number of lines in the file, waiting for the
+         * file to be fully indexed.
+         *
+         * @return the number of lines, or <code>null</code> if the source has been closed
+         * @throws IOException if an error occurs
+         */
+        public Long lineCount() throws IOException {
+            return index().lines(true);
+        }
+
+        /**
+         * Stops indexing and releases the mapped file.
+         */
+        public synchronized void close() {
+            if (index != null) {
+                index.close();
+                index = null;
+            }
+        }
+
+        private synchronized LineIndex index() throws IOException {
+            if (index == null) {
+                open();
+            }
+            return index;
+        }
+
+        /**
+         * Sparse index of the lines of a mapped file: the offset of
+         * one line every {@link #INTERVAL} lines is recorded, and the
+         * lines in between are found by scanning the mapped buffers.
+         */
+        private static class LineIndex implements Runnable {
+            static final int INTERVAL = 64;
+            static final int PUBLISH_SIZE = 1 << 20;
+
+            final Path path;
+            final int chunkSize;
+            volatile boolean closed;
+
+            // Guarded by this
+            Mapping mapping;
+            long[] offsets = new long[1024];
+            int nbOffsets;
+            long nbLines;
+            long scanned;
+            boolean eol = true;
+            boolean indexing;
+            IOException failure;
+
+            LineIndex(Path path, BasicFileAttributes attrs, int chunkSize) throws IOException {
+                this.path = path;
+                this.chunkSize = chunkSize;
+                this.mapping = new Mapping(path, attrs, chunkSize);
+                start();
+            }
+
+            synchronized boolean isCurrent(BasicFileAttributes attrs) {
+                return mapping.size == attrs.size() && mapping.lastModified.equals(attrs.lastModifiedTime());
+            }
+
+            /**
+             * Maps the bytes appended to the file and indexes them, if the
+             * file has only grown since it has been mapped.
+             */
+            synchronized boolean grow(BasicFileAttributes attrs) throws IOException {
+                if (closed || failure != null
+                        || attrs.size() <= mapping.size
+                        || !Objects.equals(attrs.fileKey(), mapping.fileKey)) {
+                    return false;
+                }
+                mapping = new Mapping(path, attrs, chunkSize);
+                if (!indexing) {
+                    start();
+                }
+                return true;
+            }
+
+            private void start() {
+                indexing = true;
+                Thread thread = new Thread(this, "Source indexer " + path);
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            @Override
+            public void run() {
+                Mapping mapping;
+                long[] offsets;
+                int nbOffsets;
+                long nbLines;
+                long pos;
+                boolean eol;
+                synchronized (this) {
+                    mapping = this.mapping;
+                    offsets = this.offsets;
+                    nbOffsets = this.nbOffsets;
+                    nbLines = this.nbLines;
+                    pos = this.scanned;
+                    eol = this.eol;
+                }
+                try {
+                    while (true) {
+                        while (pos < mapping.size) {
+                            if (closed) {
+                                return;
+                            }
+                            int c = (int) (pos / chunkSize);
+                            ByteBuffer chunk = mapping.chunks[c];
+                            long base = (long) c * chunkSize;
+                            int limit = (int) Math.min(chunk.limit(), pos - base + PUBLISH_SIZE);
+                            for (int i = (int) (pos - base); i < limit; i++) {
+                                if (eol) {
+                                    if (nbLines++ % INTERVAL == 0) {
+                                        if (nbOffsets == offsets.length) {
+                                            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                                        }
+                                        offsets[nbOffsets++] = base + i;
+                                    }
+                                    eol = false;
+                                }
+                                if (chunk.get(i) == '\n') {
+                                    eol = true;
+                                }
+                            }
+                            pos = base + limit;
+                            synchronized (this) {
+                                this.offsets = offsets;
+                                this.nbOffsets = nbOffsets;
+                                this.nbLines = nbLines;
+                                this.scanned = pos;
+                                this.eol = eol;
+                                notifyAll();
+                            }
+                        }
+                        synchronized (this) {
+                            // Continue with the bytes appended while indexing
+                            if (this.mapping == mapping) {
+                                indexing = false;
+                                notifyAll();
+                                return;
+                            }
+                            mapping = this.mapping;
+                        }
+                    }
+                } catch (InternalError e) {
+                    // The file has been truncated while being mapped
+                    synchronized (this) {
+                        failure = new IOException("Unable to read " + e.getMessage(), e);
+                        indexing = false;
+                        notifyAll();
+                    }
+                }
+            }
+
+            synchronized long counted() {
+                return nbLines;
+            }
+
+            synchronized Long lines(boolean wait) throws IOException {
+                if (wait) {
+                    await(Integer.MAX_VALUE);
+                }
+                return indexing ? null : nbLines;
+            }
+
+            String line(int line, Charset charset) throws IOException {
+                List<String> lines = lines(line, line + 1, charset);
+                return lines.isEmpty() ? null : lines.get(0);
+            }
+
+            List<String> lines(int from, int to, Charset charset) throws IOException {
+                int checkpoint = from / INTERVAL;
+                long start;
+                Mapping mapping;
+                synchronized (this) {
+                    await(checkpoint);
+                    if (checkpoint >= nbOffsets) {
+                        return Collections.emptyList();
+                    }
+                    start = offsets[checkpoint];
+                    mapping = this.mapping;
+                }
+                try {
+                    for (int skip = from % INTERVAL; skip > 0; skip--) {
+                        long eol = mapping.indexOf('\n', start);
+                        if (eol < 0) {
+                            return Collections.emptyList();
+                        }
+                        start = eol + 1;
+                    }
+                    List<String> lines = new ArrayList<>(Math.max(0, to - from));
+                    for (int line = from; line < to && start < mapping.size; line++) {
+                        long end = mapping.indexOf('\n', start);
+                        long next = end + 1;
+                        if (end < 0) {
+                            end = mapping.size;
+                            next = mapping.size;
+                        }
+                        if (end > start && mapping.get(end - 1) == '\r') {
+                            end--;
+                        }
+                        lines.add(new String(mapping.bytes(start, end), charset));
+                        start = next;
+                    }
+                    return lines;
+                } catch (InternalError e) {
+                    throw new IOException("Unable to read " + e.getMessage(), e);
+                }
+            }
+
+            private void await(int checkpoint) throws IOException {
+                try {
+                    while (nbOffsets <= checkpoint && indexing && failure == null && !closed) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+
+            synchronized void close() {
+                closed = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * The content of a file mapped in chunks, as a single buffer
+         * can not map more than 2GB.
+         */
+        private static class Mapping {
+            final long size;
+            final FileTime lastModified;
+            final Object fileKey;
+            final int chunkSize;
+            final ByteBuffer[] chunks;
+
+            Mapping(Path path, BasicFileAttributes attrs, int chunkSize) throws IOException {
+                this.size = attrs.size();
+                this.lastModified = attrs.lastModifiedTime();
+                this.fileKey = attrs.fileKey();
+                this.chunkSize = chunkSize;
+                this.chunks = new ByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    for (int i = 0; i < chunks.length; i++) {
+                        long start = (long) i * chunkSize;
+                        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+                    }
+                }
+            }
+
+            byte get(long pos) {
+                return chunks[(int) (pos / chunkSize)].get((int) (pos % chunkSize));
+            }
+
+            long indexOf(int b, long from) {
+                for (int c = (int) (from / chunkSize); c < chunks.length; c++) {
+                    ByteBuffer chunk = chunks[c];
+                    long base = (long) c * chunkSize;
+                    for (int i = (int) Math.max(0, from - base), limit = chunk.limit(); i < limit; i++) {
+                        if (chunk.get(i) == b) {
+                            return base + i;
+                        }
+                    }
+                }
+                return -1;
+            }
+
+            byte[] bytes(long start, long end) {
+                byte[] bytes = new byte[(int) Math.min(end - start, Integer.MAX_VALUE - 8)];
+                int off = 0;
+                while (off < bytes.length) {
+                    long pos = start + off;
+                    ByteBuffer chunk = chunks[(int) (pos / chunkSize)].duplicate();
+                    chunk.position((int) (pos % chunkSize));
+                    int n = Math.min(bytes.length - off, chunk.remaining());
+                    chunk.get(bytes, off, n);
+                    off += n;
+                }
+                return bytes;
             }
-            return out;
         }
     }
 
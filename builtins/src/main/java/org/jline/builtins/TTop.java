@@ -19,10 +19,12 @@ import org.jline.utils.*;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.management.*;
+import java.lang.reflect.Method;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
 import java.util.stream.Collectors;
 
 import static org.jline.builtins.TTop.Align.Left;
@@ -103,9 +105,14 @@ public class TTop {
     private final KeyMap<Operation> keys;
     private final Size size = new Size();
 
-    private Comparator<Map<String, Comparable<?>>> comparator;
+    private RowComparator comparator;
+
+    // Bulk cpu time accessors from com.sun.management.ThreadMXBean, if available
+    private final Method threadCpuTimes;
+    private final Method threadUserTimes;
 
     // Internal cache data
+    private ThreadSamples samples;
     private Map<Long, Map<String, Object>> previous = new HashMap<>();
     private Map<Long, Map<String, Long>> changes = new HashMap<>();
     private Map<String, Integer> widths = new HashMap<>();
@@ -137,6 +144,9 @@ public class TTop {
 
         keys = new KeyMap<>();
         bindKeys(keys);
+
+        threadCpuTimes = bulkTimes("getThreadCpuTime");
+        threadUserTimes = bulkTimes("getThreadUserTime");
     }
 
     public KeyMap<Operation> getKeys() {
@@ -260,44 +270,156 @@ public class TTop {
         }
     }
 
-    private List<Map<String, Comparable<?>>> infos() {
-        long ctime = ManagementFactory.getRuntimeMXBean().getUptime();
-        Long ptime = (Long) previous.computeIfAbsent(-1L, id -> new HashMap<>()).put(STAT_UPTIME, ctime);
-        long delta = ptime != null ? ctime - ptime : 0L;
-
+    /**
+     * Take a new sample of all the live threads.
+     *
+     * Thread infos are retrieved in bulk and cpu times using the array
+     * methods of <code>com.sun.management.ThreadMXBean</code> when available.
+     * Cpu percentages are computed against the previous sample, which is
+     * then replaced, so that dead threads are forgotten.
+     *
+     * @return the new sample
+     */
+    protected ThreadSamples sample() {
         ThreadMXBean threadsBean = ManagementFactory.getThreadMXBean();
-        ThreadInfo[] infos = threadsBean.dumpAllThreads(false, false);
-        List<Map<String, Comparable<?>>> threads = new ArrayList<>();
-        for (ThreadInfo ti : infos) {
-            Map<String, Comparable<?>> t = new HashMap<>();
-            t.put(STAT_TID, ti.getThreadId());
-            t.put(STAT_NAME, ti.getThreadName());
-            t.put(STAT_STATE, ti.getThreadState());
-            if (threadsBean.isThreadContentionMonitoringEnabled()) {
-                t.put(STAT_BLOCKED_TIME, ti.getBlockedTime());
-                t.put(STAT_BLOCKED_COUNT, ti.getBlockedCount());
-                t.put(STAT_WAITED_TIME, ti.getWaitedTime());
-                t.put(STAT_WAITED_COUNT, ti.getWaitedCount());
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        long[] ids = threadsBean.getAllThreadIds();
+        Arrays.sort(ids);
+        ThreadInfo[] infos = threadsBean.getThreadInfo(ids, 0);
+        // Drop the threads which died in between
+        int nb = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] != null) {
+                ids[nb] = ids[i];
+                infos[nb] = infos[i];
+                nb++;
             }
-            t.put(STAT_LOCK_NAME, ti.getLockName());
-            t.put(STAT_LOCK_OWNER_ID, ti.getLockOwnerId());
-            t.put(STAT_LOCK_OWNER_NAME, ti.getLockOwnerName());
-            if (threadsBean.isThreadCpuTimeSupported() && threadsBean.isThreadCpuTimeEnabled()) {
-                long tid = ti.getThreadId(), t0, t1;
-                // Cpu
-                t1 = threadsBean.getThreadCpuTime(tid);
-                t0 = (Long) previous.computeIfAbsent(tid, id -> new HashMap<>()).getOrDefault(STAT_CPU_TIME, t1);
-                t.put(STAT_CPU_TIME, t1);
-                t.put(STAT_CPU_TIME_PERC, (delta != 0) ? (t1 - t0) / ((double) delta * 1000000) : 0.0d);
-                // User
-                t1 = threadsBean.getThreadUserTime(tid);
-                t0 = (Long) previous.computeIfAbsent(tid, id -> new HashMap<>()).getOrDefault(STAT_USER_TIME, t1);
-                t.put(STAT_USER_TIME, t1);
-                t.put(STAT_USER_TIME_PERC, (delta != 0) ? (t1 - t0) / ((double) delta * 1000000) : 0.0d);
+        }
+        if (nb < ids.length) {
+            ids = Arrays.copyOf(ids, nb);
+            infos = Arrays.copyOf(infos, nb);
+        }
+        ThreadSamples cur = new ThreadSamples(uptime, ids, infos);
+        if (threadsBean.isThreadCpuTimeSupported() && threadsBean.isThreadCpuTimeEnabled()) {
+            cur.cpu = times(threadsBean, threadCpuTimes, ids, threadsBean::getThreadCpuTime);
+            cur.user = times(threadsBean, threadUserTimes, ids, threadsBean::getThreadUserTime);
+            cur.cpuPerc = new double[nb];
+            cur.userPerc = new double[nb];
+            ThreadSamples prv = samples;
+            long delta = prv != null ? uptime - prv.uptime : 0L;
+            if (delta != 0 && prv.cpu != null) {
+                double nanos = (double) delta * 1000000;
+                for (int i = 0; i < nb; i++) {
+                    int j = Arrays.binarySearch(prv.ids, ids[i]);
+                    if (j >= 0) {
+                        cur.cpuPerc[i] = perc(cur.cpu[i], prv.cpu[j], nanos);
+                        cur.userPerc[i] = perc(cur.user[i], prv.user[j], nanos);
+                    }
+                }
             }
-            threads.add(t);
         }
-        return threads;
+        samples = cur;
+        // Forget about the dead threads
+        previous.keySet().removeIf(tid -> !cur.isAlive(tid));
+        changes.keySet().removeIf(tid -> !cur.isAlive(tid));
+        return cur;
+    }
+
+    private static double perc(long t1, long t0, double nanos) {
+        // Times are -1 for threads which died while sampling
+        return t1 >= 0 && t0 >= 0 ? (t1 - t0) / nanos : 0.0d;
+    }
+
+    private static long[] times(ThreadMXBean threadsBean, Method bulk, long[] ids, LongUnaryOperator single) {
+        if (bulk != null) {
+            try {
+                return (long[]) bulk.invoke(threadsBean, (Object) ids);
+            } catch (Exception e) {
+                // Fall back to one call per thread
+            }
+        }
+        long[] times = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            times[i] = single.applyAsLong(ids[i]);
+        }
+        return times;
+    }
+
+    private static Method bulkTimes(String name) {
+        // Use reflection so that we do not depend on com.sun.management
+        try {
+            Class<?> cl = Class.forName("com.sun.management.ThreadMXBean");
+            if (cl.isInstance(ManagementFactory.getThreadMXBean())) {
+                return cl.getMethod(name, long[].class);
+            }
+        } catch (Throwable t) {
+            // Not available
+        }
+        return null;
+    }
+
+    /**
+     * Select the first threads of the sample according to the sort order,
+     * without sorting the whole sample.
+     *
+     * @param samples the sample to select from
+     * @param nb the maximum number of threads to select
+     * @return the sorted indexes of the selected threads
+     */
+    protected int[] select(ThreadSamples samples, int nb) {
+        if (comparator == null) {
+            comparator = buildComparator(sort);
+        }
+        RowComparator cmp = comparator;
+        // Max-heap holding the selected rows, the last one being at the root
+        int[] heap = new int[Math.max(0, Math.min(nb, samples.size()))];
+        int size = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(samples, cmp, heap, size++);
+            } else if (size > 0 && cmp.compare(samples, i, heap[0]) < 0) {
+                heap[0] = i;
+                siftDown(samples, cmp, heap, 0, size);
+            }
+        }
+        for (int end = size - 1; end > 0; end--) {
+            int t = heap[0];
+            heap[0] = heap[end];
+            heap[end] = t;
+            siftDown(samples, cmp, heap, 0, end);
+        }
+        return heap;
+    }
+
+    private static void siftUp(ThreadSamples samples, RowComparator cmp, int[] heap, int k) {
+        int row = heap[k];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (cmp.compare(samples, row, heap[parent]) <= 0) {
+                break;
+            }
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = row;
+    }
+
+    private static void siftDown(ThreadSamples samples, RowComparator cmp, int[] heap, int k, int size) {
+        int row = heap[k];
+        int half = size >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            if (child + 1 < size && cmp.compare(samples, heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (cmp.compare(samples, row, heap[child]) >= 0) {
+                break;
+            }
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = row;
     }
 
     private void align(AttributedStringBuilder sb, String val, int width, Align align) {
@@ -404,15 +526,16 @@ public class TTop {
         lines.add(sb.toAttributedString());
 
         // Threads
-        List<Map<String, Comparable<?>>> threads = infos();
-        Collections.sort(threads, comparator);
+        ThreadSamples threads = sample();
         int nb = Math.min(size.getRows() - lines.size() - 2, nthreads > 0 ? nthreads : threads.size());
+        int[] rows = select(threads, nb);
+        nb = rows.length;
         // Compute values
-        List<Map<String, String>> values = threads.subList(0, nb).stream()
-                .map(thread -> stats.stream()
+        List<Map<String, String>> values = Arrays.stream(rows)
+                .mapToObj(row -> stats.stream()
                         .collect(Collectors.toMap(
                                 Function.identity(),
-                                key -> columns.get(key).format.apply(thread.get(key)))))
+                                key -> columns.get(key).format.apply(threads.get(row, key)))))
                 .collect(Collectors.toList());
         for (String key : stats) {
             int width = values.stream().mapToInt(map -> map.get(key).length()).max().orElse(0);
@@ -450,14 +573,14 @@ public class TTop {
         sb.setLength(0);
         // Threads
         for (int i = 0; i < nb; i++) {
-            Map<String, Comparable<?>> thread = threads.get(i);
-            long tid = (Long) thread.get(STAT_TID);
+            int row = rows[i];
+            long tid = threads.ids[row];
             for (String key : cstats) {
                 if (sb.length() > 0) {
                     sb.append(" ");
                 }
                 long last;
-                Object cur = thread.get(key);
+                Object cur = threads.get(row, key);
                 Object prv = previous.computeIfAbsent(tid, id -> new HashMap<>()).put(key, cur);
                 if (prv != null && !prv.equals(cur)) {
                     changes.computeIfAbsent(tid, id -> new HashMap<>()).put(key, now);
@@ -480,11 +603,11 @@ public class TTop {
         display.update(lines, 0);
     }
 
-    private Comparator<Map<String, Comparable<?>>> buildComparator(List<String> sort) {
+    private RowComparator buildComparator(List<String> sort) {
         if (sort == null || sort.isEmpty()) {
             sort = Collections.singletonList(STAT_TID);
         }
-        Comparator<Map<String, Comparable<?>>> comparator = null;
+        RowComparator comparator = null;
         for (String key : sort) {
             String fkey;
             boolean asc;
@@ -501,8 +624,7 @@ public class TTop {
             if (!columns.containsKey(fkey)) {
                 throw new IllegalArgumentException("Unsupported sort key: " + fkey);
             }
-            @SuppressWarnings("unchecked")
-            Comparator<Map<String, Comparable<?>>> comp = Comparator.comparing(m -> (Comparable) m.get(fkey));
+            RowComparator comp = comparing(fkey);
             if (asc) {
                 comp = comp.reversed();
             }
@@ -512,7 +634,25 @@ public class TTop {
                 comparator = comp;
             }
         }
-        return comparator;
+        // Make the order total so that the selected threads are stable
+        return comparator.thenComparing(comparing(STAT_TID));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static RowComparator comparing(String key) {
+        switch (key) {
+            case STAT_NAME:
+            case STAT_STATE:
+            case STAT_LOCK_NAME:
+            case STAT_LOCK_OWNER_NAME:
+                Comparator<Comparable> objects = Comparator.nullsFirst(Comparator.naturalOrder());
+                return (s, i, j) -> objects.compare(s.get(i, key), s.get(j, key));
+            case STAT_CPU_TIME_PERC:
+            case STAT_USER_TIME_PERC:
+                return (s, i, j) -> Double.compare(s.getDouble(i, key), s.getDouble(j, key));
+            default:
+                return (s, i, j) -> Long.compare(s.getLong(i, key), s.getLong(j, key));
+        }
     }
 
     private void register(String name, Align align, String header, Function<Object, String> format) {
@@ -612,4 +752,105 @@ public class TTop {
         }
     }
 
+    @FunctionalInterface
+    private interface RowComparator {
+
+        int compare(ThreadSamples samples, int i, int j);
+
+        default RowComparator reversed() {
+            return (s, i, j) -> compare(s, j, i);
+        }
+
+        default RowComparator thenComparing(RowComparator other) {
+            return (s, i, j) -> {
+                int res = compare(s, i, j);
+                return res != 0 ? res : other.compare(s, i, j);
+            };
+        }
+    }
+
+    /**
+     * A sample of the live threads, stored by columns and sorted by thread id.
+     */
+    protected static class ThreadSamples {
+        final long uptime;
+        final long[] ids;
+        final ThreadInfo[] infos;
+        long[] cpu;
+        long[] user;
+        double[] cpuPerc;
+        double[] userPerc;
+
+        ThreadSamples(long uptime, long[] ids, ThreadInfo[] infos) {
+            this.uptime = uptime;
+            this.ids = ids;
+            this.infos = infos;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public boolean isAlive(long tid) {
+            return Arrays.binarySearch(ids, tid) >= 0;
+        }
+
+        public Comparable<?> get(int row, String key) {
+            ThreadInfo ti = infos[row];
+            switch (key) {
+                case STAT_NAME:
+                    return ti.getThreadName();
+                case STAT_STATE:
+                    return ti.getThreadState();
+                case STAT_LOCK_NAME:
+                    return ti.getLockName();
+                case STAT_LOCK_OWNER_NAME:
+                    return ti.getLockOwnerName();
+                case STAT_CPU_TIME:
+                case STAT_USER_TIME:
+                    return cpu != null ? getLong(row, key) : null;
+                case STAT_CPU_TIME_PERC:
+                case STAT_USER_TIME_PERC:
+                    return cpu != null ? getDouble(row, key) : null;
+                default:
+                    return getLong(row, key);
+            }
+        }
+
+        public long getLong(int row, String key) {
+            ThreadInfo ti = infos[row];
+            switch (key) {
+                case STAT_TID:
+                    return ids[row];
+                case STAT_BLOCKED_TIME:
+                    return ti.getBlockedTime();
+                case STAT_BLOCKED_COUNT:
+                    return ti.getBlockedCount();
+                case STAT_WAITED_TIME:
+                    return ti.getWaitedTime();
+                case STAT_WAITED_COUNT:
+                    return ti.getWaitedCount();
+                case STAT_LOCK_OWNER_ID:
+                    return ti.getLockOwnerId();
+                case STAT_CPU_TIME:
+                    return cpu != null ? cpu[row] : 0L;
+                case STAT_USER_TIME:
+                    return user != null ? user[row] : 0L;
+                default:
+                    throw new IllegalArgumentException("Unsupported numeric key: " + key);
+            }
+        }
+
+        public double getDouble(int row, String key) {
+            switch (key) {
+                case STAT_CPU_TIME_PERC:
+                    return cpuPerc != null ? cpuPerc[row] : 0.0d;
+                case STAT_USER_TIME_PERC:
+                    return userPerc != null ? userPerc[row] : 0.0d;
+                default:
+                    return getLong(row, key);
+            }
+        }
+    }
+
 }
@@ -13,13 +13,24 @@ import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.jline.reader.ParsedLine;
 import org.jline.reader.impl.DefaultParser;
+import org.jline.reader.impl.LineReaderImpl;
+import org.jline.terminal.impl.DumbTerminal;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.jline.builtins.Completers.TreeCompleter.node;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CompletersTest {
 
@@ -51,4 +62,50 @@ public class CompletersTest {
         assertEquals(1, words.size());
         assertEquals("", words.get(0));
     }
+
+    @Test
+    public void testFileNameCompleter() throws Exception {
+        Path dir = Files.createTempDirectory("jline");
+        try {
+            Files.createFile(dir.resolve("foo.txt"));
+            Files.createDirectory(dir.resolve("bar"));
+            FileTime lastModified = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+            Files.setLastModifiedTime(dir, lastModified);
+
+            LineReaderImpl reader = new LineReaderImpl(new DumbTerminal("terminal", "ansi",
+                    new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), StandardCharsets.UTF_8));
+            reader.setVariable(Completers.FileNameCompleter.LS_COLORS, "di=1;34:*.txt=32");
+            Completer completer = new Completers.FilesCompleter(dir);
+            List<Candidate> candidates = complete(reader, completer);
+            assertEquals(2, candidates.size());
+            assertEquals("bar/", candidates.get(0).value());
+            assertEquals("\033[34;1mbar\033[0m/", candidates.get(0).displ());
+            assertEquals("foo.txt", candidates.get(1).value());
+            assertEquals("\033[32mfoo.txt\033[0m", candidates.get(1).displ());
+
+            // The listing is cached as long as the directory is not modified
+            Files.createFile(dir.resolve("baz"));
+            Files.setLastModifiedTime(dir, lastModified);
+            assertEquals(2, complete(reader, completer).size());
+            Files.setLastModifiedTime(dir, FileTime.fromMillis(System.currentTimeMillis()));
+            assertEquals(3, complete(reader, completer).size());
+
+            // Directories only
+            candidates = complete(reader, new Completers.DirectoriesCompleter(dir));
+            assertEquals(1, candidates.size());
+            assertTrue(candidates.get(0).value().startsWith("bar"));
+        } finally {
+            for (Path p : Files.list(dir).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private List<Candidate> complete(LineReader reader, Completer completer) {
+        List<Candidate> candidates = new ArrayList<>();
+        completer.complete(reader, new DefaultParser().parse("", 0), candidates);
+        candidates.sort((c1, c2) -> c1.value().compareTo(c2.value()));
+        return candidates;
+    }
 }
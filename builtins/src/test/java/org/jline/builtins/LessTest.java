@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.builtins;
+
+import org.jline.builtins.Source.MappedSource;
+import org.jline.builtins.Source.PathSource;
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.LineDisciplineTerminal;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class LessTest {
+
+    private static final int LINES = 20000;
+
+    @Test(timeout = 20000)
+    public void testSearchMapped() throws Exception {
+        Path file = createFile();
+        try {
+            assertSearch(file, new MappedSource(file, "test", StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testSearchStream() throws Exception {
+        Path file = createFile();
+        try {
+            assertSearch(file, new PathSource(file, "test"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private Path createFile() throws IOException {
+        Random random = new Random(3);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            sb.append(i).append(random.nextInt(500) == 0 ? " foo" : " bar").append('\n');
+        }
+        Path file = Files.createTempFile("less", ".txt");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private void assertSearch(Path file, Source source) throws IOException {
+        List<Integer> matches = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Pattern pattern = Pattern.compile("foo");
+        for (int i = 0; i < lines.size(); i++) {
+            if (pattern.matcher(lines.get(i)).find()) {
+                matches.add(i);
+            }
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        LineDisciplineTerminal terminal = new LineDisciplineTerminal("less", "xterm", output, StandardCharsets.UTF_8);
+        terminal.setSize(new Size(80, 25));
+        Less less = new Less(terminal, file.getParent());
+        less.sources = new ArrayList<>(Arrays.asList(
+                new Source.ResourceSource("less-help.txt", "HELP"), source));
+        less.sourceIdx = 1;
+        less.size.copy(terminal.getSize());
+        less.window = less.size.getRows() - 1;
+        less.openSource();
+
+        // Twice, the second time being answered from the cache
+        for (int pass = 0; pass < 2; pass++) {
+            // Repeated n from the top, until the end of the source
+            List<Integer> found = new ArrayList<>();
+            int line = less.search(pattern, null, 0, true);
+            while (line >= 0) {
+                found.add(line);
+                line = less.search(pattern, null, line + 1, true);
+            }
+            assertEquals(matches, found);
+            assertEquals(LINES, less.searchCache.lines);
+
+            // Repeated N from the bottom, until the start of the source
+            found.clear();
+            line = less.search(pattern, null, LINES + 100, false);
+            while (line >= 0) {
+                found.add(0, line);
+                line = less.search(pattern, null, line - 1, false);
+            }
+            assertEquals(matches, found);
+
+            // Searches starting anywhere, beyond the end included
+            Random random = new Random(pass);
+            for (int i = 0; i < 50; i++) {
+                int from = random.nextInt(LINES + 5000);
+                assertEquals(linear(matches, from, true), less.search(pattern, null, from, true));
+                assertEquals(linear(matches, from, false), less.search(pattern, null, from, false));
+            }
+            assertEquals(LINES, less.searchCache.lines);
+        }
+
+        // A pattern without matches is searched up to the end by batches
+        // split in blocks, some of them past the end
+        Pattern missing = Pattern.compile("baz");
+        for (int i = 0; i < 20; i++) {
+            less.searchCache = null;
+            assertEquals(-1, less.search(missing, null, 0, true));
+            assertEquals(LINES, less.searchCache.lines);
+            assertEquals(-1, less.search(missing, null, LINES - 1, false));
+            assertEquals(-1, less.search(missing, null, 0, true));
+        }
+    }
+
+    @Test
+    public void testSearchCache() {
+        Less.SearchCache cache = new Less.SearchCache(null, Pattern.compile("foo"), null);
+        BitSet found = new BitSet();
+        found.set(3);
+        // Blocks searched in parallel may complete in any order
+        cache.add(0, 100, 100, new BitSet());
+        cache.add(100, 200, 150, found);
+        cache.add(300, 400, 300, new BitSet());
+        cache.add(200, 300, 200, new BitSet());
+        assertEquals(150, cache.lines);
+        assertEquals(150, cache.scanned.nextClearBit(0));
+        assertEquals(103, cache.matches.nextSetBit(0));
+        assertEquals(1, cache.matches.cardinality());
+    }
+
+    private static int linear(List<Integer> matches, int from, boolean forward) {
+        int result = -1;
+        for (int match : matches) {
+            if (forward && match >= from) {
+                return match;
+            } else if (!forward && match <= from) {
+                result = match;
+            }
+        }
+        return result;
+    }
+
+}
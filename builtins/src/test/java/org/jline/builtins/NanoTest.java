@@ -9,13 +9,39 @@
 package org.jline.builtins;
 
 import org.jline.keymap.KeyMap;
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Attributes.InputFlag;
 import org.jline.terminal.Size;
 import org.jline.terminal.impl.LineDisciplineTerminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class NanoTest {
 
@@ -32,4 +58,285 @@ public class NanoTest {
         Nano nano = new Nano(terminal, new File("target/test.txt"));
         nano.run();
     }
+
+    @Test
+    public void testPieceTable() {
+        String content = "a\nbb\r\n\nccc\nd";
+        List<String> expected = new ArrayList<>(Arrays.asList("a", "bb", "", "ccc", "d"));
+        List<String> lines = new Nano.PieceTable(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        assertEquals(expected, lines);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            int op = random.nextInt(5);
+            String str = Integer.toString(i);
+            if (op == 0 || expected.isEmpty()) {
+                int idx = random.nextInt(expected.size() + 1);
+                expected.add(idx, str);
+                lines.add(idx, str);
+            } else if (op == 1) {
+                int idx = random.nextInt(expected.size());
+                assertEquals(expected.set(idx, str), lines.set(idx, str));
+            } else if (op == 2) {
+                int idx = random.nextInt(expected.size());
+                assertEquals(expected.remove(idx), lines.remove(idx));
+            } else if (op == 3) {
+                int idx = random.nextInt(expected.size());
+                assertEquals(expected.get(idx), lines.get(idx));
+            } else {
+                TreeMap<Integer, String> changes = new TreeMap<>();
+                for (int j = random.nextInt(5); j >= 0; j--) {
+                    changes.put(random.nextInt(expected.size()), str + "-" + j);
+                }
+                changes.forEach(expected::set);
+                ((Nano.PieceTable) lines).setAll(changes);
+            }
+        }
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    public void testPieceTableIndexing() {
+        // Large enough to be indexed in the background
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; sb.length() < 3 * 1024 * 1024; i++) {
+            String str = "line " + i;
+            expected.add(str);
+            sb.append(str).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        Nano.PieceTable lines = new Nano.PieceTable(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        assertTrue(lines.hasLine(0));
+        assertEquals("line 0", lines.get(0));
+        assertEquals(expected.get(100000), lines.get(100000));
+        assertTrue(lines.hasLine(expected.size() - 1));
+        assertFalse(lines.hasLine(expected.size()));
+        assertTrue(lines.isIndexed());
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    public void testSyntaxHighlighter() {
+        AttributedStyle keyword = AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN);
+        AttributedStyle comment = AttributedStyle.DEFAULT.foreground(AttributedStyle.BLUE);
+        List<String> lines = new ArrayList<>(Arrays.asList("int a; /* x", "int b;", "*/ int c; /* d */ int e;"));
+        Nano.SyntaxHighlighter highlighter = highlighter(keyword, comment);
+        assertEquals(new AttributedStringBuilder()
+                .styled(keyword, "int").append(" a; ").styled(comment, "/* x").toAttributedString(),
+                highlighter.highlight(lines, 0));
+        // Lines following a comment start are highlighted without displaying the lines before
+        assertEquals(new AttributedStringBuilder()
+                .styled(comment, "*/").append(" ").styled(keyword, "int").append(" c; ")
+                .styled(comment, "/* d */").append(" ").styled(keyword, "int").append(" e;").toAttributedString(),
+                highlighter.highlight(lines, 2));
+        assertEquals(new AttributedString("int b;", comment), highlighter.highlight(lines, 1));
+
+        // Compare the incremental highlighting with a new highlighter after random edits
+        String[] words = { "int", "x", "/*", "*/", " ", ";" };
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                sb.append(words[random.nextInt(words.length)]);
+            }
+            int op = random.nextInt(3);
+            int idx = random.nextInt(lines.size());
+            if (op == 0) {
+                lines.add(idx, sb.toString());
+                highlighter.linesChanged(idx, 0, 1);
+            } else if (op == 1 && lines.size() > 1) {
+                lines.remove(idx);
+                highlighter.linesChanged(idx, 1, 0);
+            } else {
+                lines.set(idx, sb.toString());
+                highlighter.linesChanged(idx, 1, 1);
+            }
+            int line = random.nextInt(lines.size());
+            assertEquals(highlighter(keyword, comment).highlight(lines, line), highlighter.highlight(lines, line));
+        }
+    }
+
+    private Nano.SyntaxHighlighter highlighter(AttributedStyle keyword, AttributedStyle comment) {
+        Nano.SyntaxHighlighter highlighter = new Nano.SyntaxHighlighter();
+        highlighter.addRule(keyword, Pattern.compile("\\bint\\b"));
+        highlighter.addRule(comment, Pattern.compile("/\\*"), Pattern.compile("\\*/"));
+        return highlighter;
+    }
+
+    @Test
+    public void testWriteLines() throws Exception {
+        String content = "a\nbb\r\n\nccc\nd";
+        Nano.PieceTable lines = new Nano.PieceTable(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        assertEquals("a\nbb\n\nccc\nd\n", write(lines, "\n"));
+        assertEquals("a\r\nbb\r\n\r\nccc\r\nd\r\n", write(lines, "\r\n"));
+        lines.set(1, "bé");
+        lines.add(4, "e");
+        assertEquals("a\nbé\n\nccc\ne\nd\n", write(lines, "\n"));
+    }
+
+    private String write(List<String> lines, String eol) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Nano.LineWriter writer = new Nano.LineWriter(Channels.newChannel(baos), StandardCharsets.UTF_8, eol);
+        ((Nano.PieceTable) lines).write(writer);
+        writer.flush();
+        assertEquals(baos.size(), writer.getWritten());
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testTruncatedMappedFile() throws Exception {
+        Path file = Files.createTempFile("nano", ".txt");
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                sb.append("line ").append(i).append('\n');
+            }
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            ByteBuffer bytes;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Nano.PieceTable lines = new Nano.PieceTable(bytes, StandardCharsets.UTF_8);
+            assertEquals("line 1", lines.get(1));
+            lines.set(0, "edited");
+
+            // Another process truncates the file
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+            assertNull(lines.getFailure());
+            assertEquals("edited", lines.get(0));
+            assertEquals("line 1", lines.get(1));
+            assertEquals("", lines.get(1500));
+            assertNotNull(lines.getFailure());
+            try {
+                write(lines, "\n");
+                fail("Expected an IOException");
+            } catch (IOException e) {
+                assertSame(lines.getFailure(), e);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testAppend() throws Exception {
+        Path file = Files.createTempFile("nano", ".txt");
+        try {
+            Files.write(file, "first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            LineDisciplineTerminal terminal = new LineDisciplineTerminal("nano", "xterm", output, StandardCharsets.UTF_8);
+            terminal.setSize(new Size(80, 25));
+            Attributes attrs = terminal.getAttributes();
+            attrs.setInputFlag(InputFlag.ICRNL, false);
+            terminal.setAttributes(attrs);
+            // Append the buffer to its own file, then exit
+            String keys = KeyMap.ctrl('O') + KeyMap.alt('a') + "\r" + KeyMap.ctrl('X');
+            for (byte b : keys.getBytes(StandardCharsets.UTF_8)) {
+                terminal.processInputByte(b);
+            }
+            Nano nano = new Nano(terminal, file.getParent());
+            nano.open(file.getFileName().toString());
+            nano.run();
+            assertEquals(Arrays.asList("first", "second", "first", "second"), Files.readAllLines(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testReplace() throws Exception {
+        Path file = Files.createTempFile("nano", ".txt");
+        try {
+            StringBuilder sb = new StringBuilder("foo bar foo\n");
+            for (int i = 0; i < 20000; i++) {
+                sb.append("x\n");
+            }
+            sb.append("foo\na foo b foo\n");
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            LineDisciplineTerminal terminal = new LineDisciplineTerminal("nano", "xterm", output, StandardCharsets.UTF_8);
+            terminal.setSize(new Size(80, 25));
+            Attributes attrs = terminal.getAttributes();
+            attrs.setInputFlag(InputFlag.ICRNL, false);
+            terminal.setAttributes(attrs);
+            // Replace the first match, skip the second one and replace all the others
+            String keys = KeyMap.ctrl('W') + KeyMap.ctrl('R') + "foo\r" + "baz\r" + "yna"
+                    + KeyMap.ctrl('X') + "y\r";
+            for (byte b : keys.getBytes(StandardCharsets.UTF_8)) {
+                terminal.processInputByte(b);
+            }
+            Nano nano = new Nano(terminal, file.getParent());
+            nano.open(file.getFileName().toString());
+            nano.run();
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(20003, lines.size());
+            assertEquals("baz bar foo", lines.get(0));
+            assertEquals("x", lines.get(20000));
+            assertEquals("baz", lines.get(20001));
+            assertEquals("a baz b baz", lines.get(20002));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "~"));
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testEditMappedFile() throws Exception {
+        Path file = Files.createTempFile("nano", ".txt");
+        try {
+            Files.write(file, "first\nsecond\nthird\n".getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            LineDisciplineTerminal terminal = new LineDisciplineTerminal("nano", "xterm", output, StandardCharsets.UTF_8);
+            terminal.setSize(new Size(80, 25));
+            Attributes attrs = terminal.getAttributes();
+            attrs.setInputFlag(InputFlag.ICRNL, false);
+            terminal.setAttributes(attrs);
+            // Insert a line before the second one, then save and exit
+            for (byte b : (KeyMap.ctrl('N') + "new\r").getBytes(StandardCharsets.UTF_8)) {
+                terminal.processInputByte(b);
+            }
+            terminal.processInputByte(KeyMap.ctrl('X').getBytes()[0]);
+            terminal.processInputByte('y');
+            terminal.processInputByte('\r');
+            Nano nano = new Nano(terminal, file.getParent());
+            nano.open(file.getFileName().toString());
+            nano.run();
+            assertEquals(Arrays.asList("first", "new", "second", "third"), Files.readAllLines(file));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "~"));
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testMappedFileModified() throws Exception {
+        Path file = Files.createTempFile("nano", ".txt");
+        try {
+            Files.write(file, "first\nsecond\nthird\n".getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            LineDisciplineTerminal terminal = new LineDisciplineTerminal("nano", "xterm", output, StandardCharsets.UTF_8);
+            terminal.setSize(new Size(80, 25));
+            Attributes attrs = terminal.getAttributes();
+            attrs.setInputFlag(InputFlag.ICRNL, false);
+            terminal.setAttributes(attrs);
+            // Insert a line, fail to save and exit without saving
+            String keys = KeyMap.ctrl('N') + "new\r" + KeyMap.ctrl('X') + "y\r" + KeyMap.ctrl('X') + "n";
+            for (byte b : keys.getBytes(StandardCharsets.UTF_8)) {
+                terminal.processInputByte(b);
+            }
+            Nano nano = new Nano(terminal, file.getParent());
+            nano.open(file.getFileName().toString());
+            nano.buffers.get(0).open();
+            // Another process rewrites the mapped file in place
+            Files.write(file, "FIRST\nSECOND\nTHIRD\nFOURTH\n".getBytes(StandardCharsets.UTF_8));
+            nano.run();
+            assertEquals(Arrays.asList("FIRST", "SECOND", "THIRD", "FOURTH"), Files.readAllLines(file));
+            assertTrue(output.toString("UTF-8").contains("File was modified since you opened it"));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + "~"));
+        }
+    }
 }
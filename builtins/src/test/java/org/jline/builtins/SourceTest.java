@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.builtins;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jline.builtins.Source.MappedSource;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SourceTest {
+
+    @Test
+    public void testMappedSource() throws IOException {
+        assertLines("");
+        assertLines("a");
+        assertLines("a\n");
+        assertLines("\n\n");
+        assertLines("a\r\nb\r\n\r\nc");
+        assertLines("héllo\nwörld\n");
+
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            int len = random.nextInt(40);
+            for (int j = 0; j < len; j++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            sb.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+        }
+        assertLines(sb.toString());
+    }
+
+    @Test
+    public void testMappedSourceGrowth() throws IOException {
+        Path file = Files.createTempFile("source", ".txt");
+        try {
+            Files.write(file, "a\nb".getBytes(StandardCharsets.UTF_8));
+            MappedSource source = new MappedSource(file, "test", StandardCharsets.UTF_8, 7);
+            try {
+                assertTrue(source.open());
+                assertEquals(2, (long) source.lineCount());
+                assertEquals("b", source.line(1));
+                assertFalse(source.open());
+
+                // Appended lines are indexed
+                StringBuilder sb = new StringBuilder("c\n");
+                for (int i = 3; i < 200; i++) {
+                    sb.append(i).append('\n');
+                }
+                Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+                assertTrue(source.open());
+                assertEquals(199, (long) source.lineCount());
+                assertEquals("bc", source.line(1));
+                assertEquals("3", source.line(2));
+                assertEquals("199", source.line(198));
+                assertEquals(Arrays.asList("70", "71"), source.readLines(69, 71));
+
+                // A rotated file is indexed again
+                Files.delete(file);
+                Files.write(file, "x\r\ny\n".getBytes(StandardCharsets.UTF_8));
+                assertTrue(source.open());
+                assertEquals(2, (long) source.lineCount());
+                assertEquals("x", source.line(0));
+                assertNull(source.line(2));
+            } finally {
+                source.close();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLineCounter() throws Exception {
+        Path file = Files.createTempFile("source", ".txt");
+        try {
+            Source.LineCounter counter = new Source.LineCounter(file);
+            assertEquals(0, count(counter));
+            Files.write(file, "a\nb\nc".getBytes(StandardCharsets.UTF_8));
+            assertEquals(3, count(counter));
+            Files.write(file, "\nd\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            assertEquals(4, count(counter));
+            assertEquals(4, counter.counted());
+            Files.write(file, "e\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, count(counter));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLineCounterReplacedFile() throws Exception {
+        Path file = Files.createTempFile("source", ".txt");
+        Path other = Files.createTempFile("source", ".txt");
+        try {
+            Assume.assumeNotNull(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+            Source.LineCounter counter = new Source.LineCounter(file);
+            Files.write(file, "a\nb\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(2, count(counter));
+            // A bigger file with as many lines replaces the counted one
+            Files.write(other, "xxxxxx\ny\n".getBytes(StandardCharsets.UTF_8));
+            Files.move(other, file, StandardCopyOption.REPLACE_EXISTING);
+            assertEquals(2, count(counter));
+        } finally {
+            Files.deleteIfExists(other);
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLineCounterFailure() throws Exception {
+        // Mapping a directory fails
+        Path dir = Files.createTempDirectory("source");
+        try {
+            Source.LineCounter counter = new Source.LineCounter(dir);
+            assertNull(counter.lines());
+            long timeout = System.currentTimeMillis() + 10000;
+            while (isCounting(dir)) {
+                assertTrue(System.currentTimeMillis() < timeout);
+                Thread.sleep(10);
+            }
+            // The failure is remembered until the directory changes
+            for (int i = 0; i < 10; i++) {
+                assertNull(counter.lines());
+                assertFalse(isCounting(dir));
+            }
+        } finally {
+            Files.delete(dir);
+        }
+    }
+
+    private boolean isCounting(Path path) {
+        String name = "Source line counter " + path;
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().equals(name));
+    }
+
+    private long count(Source.LineCounter counter) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        Long lines;
+        while ((lines = counter.lines()) == null) {
+            assertTrue(System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+        return lines;
+    }
+
+    private void assertLines(String content) throws IOException {
+        List<String> expected = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new StringReader(content));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            expected.add(line);
+        }
+        Path file = Files.createTempFile("source", ".txt");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            // Use small chunks so that lines span several mapped buffers
+            MappedSource source = new MappedSource(file, "test", StandardCharsets.UTF_8, 7);
+            try {
+                assertEquals(expected.size(), (long) source.lineCount());
+                assertEquals(Long.valueOf(expected.size()), source.lines());
+                for (int i = expected.size() - 1; i >= 0; i--) {
+                    assertEquals(expected.get(i), source.line(i));
+                }
+                assertNull(source.line(expected.size()));
+                assertNull(source.line(expected.size() + 100));
+            } finally {
+                source.close();
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
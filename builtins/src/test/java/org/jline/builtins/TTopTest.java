@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.builtins;
+
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.LineDisciplineTerminal;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TTopTest {
+
+    @Test
+    public void testSelect() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        LineDisciplineTerminal terminal = new LineDisciplineTerminal("ttop", "xterm", output, StandardCharsets.UTF_8);
+        terminal.setSize(new Size(80, 25));
+        TTop ttop = new TTop(terminal);
+        ttop.sort = Arrays.asList("-name", "tid");
+
+        CountDownLatch done = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }, "ttop-" + (i % 10));
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            TTop.ThreadSamples samples = ttop.sample();
+            Comparator<Integer> cmp = Comparator.comparing((Integer row) -> (String) samples.get(row, TTop.STAT_NAME))
+                    .thenComparing(Comparator.comparing((Integer row) -> samples.getLong(row, TTop.STAT_TID)).reversed());
+            List<Integer> expected = IntStream.range(0, samples.size()).boxed()
+                    .sorted(cmp)
+                    .collect(Collectors.toList());
+            for (int nb : new int[] { 0, 1, 7, 20, samples.size(), samples.size() + 10 }) {
+                int[] rows = ttop.select(samples, nb);
+                assertEquals(expected.subList(0, Math.min(nb, samples.size())),
+                        Arrays.stream(rows).boxed().collect(Collectors.toList()));
+            }
+            for (Thread thread : threads) {
+                assertTrue(samples.isAlive(thread.getId()));
+            }
+        } finally {
+            done.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        // Dead threads are not sampled anymore
+        TTop.ThreadSamples samples = ttop.sample();
+        for (Thread thread : threads) {
+            assertFalse(samples.isAlive(thread.getId()));
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.cds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.jline.keymap.KeyMap;
+import org.jline.reader.EndOfFileException;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.impl.DefaultParser;
+import org.jline.reader.impl.completer.StringsCompleter;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.jline.utils.Colors;
+import org.jline.utils.InfoCmp;
+
+/**
+ * Training run used to create a class data sharing archive for JLine.
+ *
+ * <p>This class exercises the code paths used when a typical command line
+ * application starts: terminal creation and capabilities parsing, line
+ * reader and key maps creation, completion, history and styled output.
+ * Running it once with the JVM recording the loaded classes produces a
+ * class list which can then be used to build a shared archive, reducing
+ * the time to the first prompt of short-lived applications:</p>
+ *
+ * <pre>
+ * java -XX:DumpLoadedClassList=jline.classlist -cp jline.jar org.jline.cds.Training
+ * java -Xshare:dump -XX:SharedClassListFile=jline.classlist -XX:SharedArchiveFile=jline.jsa -cp jline.jar
+ * java -XX:SharedArchiveFile=jline.jsa -cp jline.jar:app.jar ...
+ * </pre>
+ *
+ * <p>On JDK 13 and later, the archive can be created in a single step using
+ * <code>-XX:ArchiveClassesAtExit=jline.jsa</code>.  Passing the <code>--system</code>
+ * argument also exercises the creation of the system terminal.</p>
+ */
+public final class Training {
+
+    private static final String[] TERMINAL_TYPES = {
+            "xterm-256color", "xterm", "screen-256color", "screen", "ansi", "dumb"
+    };
+
+    private Training() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String arg : args) {
+            if ("--system".equals(arg)) {
+                try (Terminal terminal = TerminalBuilder.builder().build()) {
+                    terminal.getSize();
+                    terminal.getAttributes();
+                }
+            }
+        }
+        for (String type : TERMINAL_TYPES) {
+            InfoCmp.getLoadedInfoCmp(type);
+        }
+        Colors.rgbColor("red");
+        for (String type : TERMINAL_TYPES) {
+            readLines(type);
+        }
+    }
+
+    private static void readLines(String type) throws IOException {
+        String input = "echo hello world\n"
+                + "ec\t \"quoted\\\" value\"\n"
+                + "!!\n"
+                + "\u001b[Aedit\u0001\u0005\u0017\n"
+                + "\u001b[200~pasted\u001b[201~\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Terminal terminal = TerminalBuilder.builder()
+                .type(type)
+                .streams(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out)
+                .encoding(StandardCharsets.UTF_8)
+                .size(new Size(80, 24))
+                .build()) {
+            LineReader reader = LineReaderBuilder.builder()
+                    .terminal(terminal)
+                    .parser(new DefaultParser())
+                    .completer(new StringsCompleter("echo", "exit", "help"))
+                    .variable(LineReader.HISTORY_SIZE, 100)
+                    .build();
+            reader.getKeyMaps().get(LineReader.VIINS);
+            reader.getKeyMaps().get(LineReader.VICMD);
+            KeyMap.translate("^[[A");
+            String prompt = new AttributedStringBuilder()
+                    .style(AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN).bold())
+                    .append("prompt")
+                    .style(AttributedStyle.DEFAULT)
+                    .append("> ")
+                    .toAnsi(terminal);
+            try {
+                while (true) {
+                    String line = reader.readLine(prompt, "right", (Character) null, null);
+                    AttributedString.fromAnsi(line).print(terminal);
+                }
+            } catch (EndOfFileException e) {
+                // expected at the end of the input
+            }
+        }
+    }
+
+}
@@ -66,12 +66,36 @@ public class BindingReader {
         T o = null;
         int[] remaining = new int[1];
         boolean hasRead = false;
+        // The key maps reached by the chars of opBuffer already looked up,
+        // so that each new char only needs a single step in the key maps
+        KeyMap<T> localPrefix = local;
+        KeyMap<T> keysPrefix = keys;
+        int localLength = 0;
+        int keysLength = 0;
         for (;;) {
             if (local != null) {
-                o = local.getBound(opBuffer, remaining);
+                if (localPrefix != null) {
+                    localPrefix = localPrefix.getPrefix(opBuffer, localLength, opBuffer.length());
+                    localLength = opBuffer.length();
+                }
+                if (localPrefix != null) {
+                    o = localPrefix.getAnotherKey();
+                    remaining[0] = -1;
+                } else {
+                    o = local.getBound(opBuffer, remaining);
+                }
             }
             if (o == null && (local == null || remaining[0] >= 0)) {
-                o = keys.getBound(opBuffer, remaining);
+                if (keysPrefix != null) {
+                    keysPrefix = keysPrefix.getPrefix(opBuffer, keysLength, opBuffer.length());
+                    keysLength = opBuffer.length();
+                }
+                if (keysPrefix != null) {
+                    o = keysPrefix.getAnotherKey();
+                    remaining[0] = -1;
+                } else {
+                    o = keys.getBound(opBuffer, remaining);
+                }
             }
             // We have a binding and additional chars
             if (o != null) {
@@ -102,6 +126,10 @@ public class BindingReader {
                 if (o != null) {
                     return o;
                 }
+                localPrefix = local;
+                keysPrefix = keys;
+                localLength = 0;
+                keysLength = 0;
             }
 
             if (!block && hasRead) {
@@ -117,6 +145,46 @@ public class BindingReader {
         return null;
     }
 
+    /**
+     * Read the input until the given sequence is found.
+     *
+     * The input is read in bulk rather than binding by binding, which
+     * makes it suitable for large amounts of data such as pasted text.
+     * Chars read after the sequence are pushed back and will be read next.
+     *
+     * @param sequence the sequence marking the end of the string
+     * @return the string read, not including the sequence
+     */
+    public String readStringUntil(String sequence) {
+        StringBuilder sb = new StringBuilder();
+        pushBackChar.forEach(sb::appendCodePoint);
+        pushBackChar.clear();
+        try {
+            char[] buf = new char[8192];
+            int from = 0;
+            while (true) {
+                int idx = sb.indexOf(sequence, from);
+                if (idx >= 0) {
+                    runMacro(sb.substring(idx + sequence.length()));
+                    sb.setLength(idx);
+                    return sb.toString();
+                }
+                // Only search the new chars, plus the ones which may be
+                // the beginning of the sequence
+                from = Math.max(0, sb.length() - sequence.length() + 1);
+                int l = reader.readBuffered(buf);
+                if (l < 0) {
+                    throw new EndOfFileException();
+                }
+                sb.append(buf, 0, l);
+            }
+        } catch (ClosedException e) {
+            throw new EndOfFileException(e);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
+
     /**
      * Read a codepoint from the terminal.
      *
@@ -15,6 +15,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import org.jline.terminal.Terminal;
 import org.jline.utils.Curses;
@@ -36,6 +37,25 @@ public class KeyMap<T> {
     private T unicode;
     private T nomatch;
     private long ambiguousTimeout = DEFAULT_AMBIGUOUS_TIMEOUT;
+    private Supplier<KeyMap<T>> template;
+    private boolean shared;
+
+    public KeyMap() {
+    }
+
+    /**
+     * Create a key map whose bindings are initially the ones of a template.
+     * The template is only retrieved when the bindings are first accessed,
+     * and its bindings are shared until this key map is modified, so the
+     * template must not be modified afterwards.  The unicode, nomatch and
+     * ambiguous timeout settings are not taken from the template.
+     *
+     * @param template the supplier of the template key map
+     */
+    public KeyMap(Supplier<KeyMap<T>> template) {
+        this.mapping = null;
+        this.template = template;
+    }
 
     public static String display(String key) {
         StringBuilder sb = new StringBuilder();
@@ -294,6 +314,7 @@ public class KeyMap<T> {
     }
 
     public Map<String, T> getBoundKeys() {
+        resolve();
         Map<String, T> bound = new TreeMap<>(KEYSEQ_COMPARATOR);
         doGetBoundKeys(this, "", bound);
         return bound;
@@ -318,26 +339,49 @@ public class KeyMap<T> {
     @SuppressWarnings("unchecked")
     public T getBound(CharSequence keySeq, int[] remaining) {
         remaining[0] = -1;
-        if (keySeq != null && keySeq.length() > 0) {
-            char c = keySeq.charAt(0);
-            if (c >= mapping.length) {
-                remaining[0] = Character.codePointCount(keySeq, 0, keySeq.length());
+        KeyMap<T> map = this;
+        int length = keySeq != null ? keySeq.length() : 0;
+        for (int i = 0; i < length; i++) {
+            map.resolve();
+            char c = keySeq.charAt(i);
+            if (c >= map.mapping.length) {
+                remaining[0] = Character.codePointCount(keySeq, i, length);
                 return null;
+            }
+            Object o = map.mapping[c];
+            if (o instanceof KeyMap) {
+                map = (KeyMap<T>) o;
+            } else if (o != null) {
+                remaining[0] = length - i - 1;
+                return (T) o;
             } else {
-                if (mapping[c] instanceof KeyMap) {
-                    CharSequence sub = keySeq.subSequence(1, keySeq.length());
-                    return ((KeyMap<T>) mapping[c]).getBound(sub, remaining);
-                } else if (mapping[c] != null) {
-                    remaining[0] = keySeq.length() - 1;
-                    return (T) mapping[c];
-                } else {
-                    remaining[0] = keySeq.length();
-                    return anotherKey;
-                }
+                remaining[0] = length - i;
+                return map.anotherKey;
             }
-        } else {
-            return anotherKey;
         }
+        return map.anotherKey;
+    }
+
+    /**
+     * Follow the chars of the given key sequence between <code>start</code>
+     * and <code>end</code> from this key map.  This allows decoding a key
+     * sequence incrementally, one char at a time.
+     *
+     * @return the key map reached if those chars are a prefix of a bound
+     *         key sequence, <code>null</code> otherwise
+     */
+    @SuppressWarnings("unchecked")
+    KeyMap<T> getPrefix(CharSequence keySeq, int start, int end) {
+        KeyMap<T> map = this;
+        for (int i = start; i < end; i++) {
+            map.resolve();
+            char c = keySeq.charAt(i);
+            if (c >= map.mapping.length || !(map.mapping[c] instanceof KeyMap)) {
+                return null;
+            }
+            map = (KeyMap<T>) map.mapping[c];
+        }
+        return map;
     }
 
     public T getBound(CharSequence keySeq) {
@@ -388,6 +432,7 @@ public class KeyMap<T> {
 
     @SuppressWarnings("unchecked")
     private static <T> T unbind(KeyMap<T> map, CharSequence keySeq) {
+        map.own();
         KeyMap<T> prev = null;
         if (keySeq != null && keySeq.length() > 0) {
             for (int i = 0; i < keySeq.length() - 1; i++) {
@@ -430,6 +475,7 @@ public class KeyMap<T> {
 
     @SuppressWarnings("unchecked")
     private static <T> void bind(KeyMap<T> map, CharSequence keySeq, T function, boolean onlyIfNotBound) {
+        map.own();
         if (keySeq != null && keySeq.length() > 0) {
             for (int i = 0; i < keySeq.length(); i++) {
                 char c = keySeq.charAt(i);
@@ -457,4 +503,37 @@ public class KeyMap<T> {
         }
     }
 
+    private void resolve() {
+        if (template != null) {
+            KeyMap<T> t = template.get();
+            t.resolve();
+            mapping = t.mapping;
+            template = null;
+            shared = true;
+        }
+    }
+
+    private void own() {
+        resolve();
+        if (shared) {
+            mapping = copy(mapping);
+            shared = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object[] copy(Object[] mapping) {
+        Object[] copy = mapping.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] instanceof KeyMap) {
+                KeyMap<Object> sub = (KeyMap<Object>) copy[i];
+                KeyMap<Object> m = new KeyMap<>();
+                m.anotherKey = sub.anotherKey;
+                m.mapping = copy(sub.mapping);
+                copy[i] = m;
+            }
+        }
+        return copy;
+    }
+
 }
@@ -136,6 +136,27 @@ public interface History extends Iterable<History.Entry>
         };
     }
 
+    /**
+     * Search backwards for the most recent entry before the given index
+     * whose line starts with or contains the given term.
+     *
+     * @param term the term to search for
+     * @param index the index to search backwards from (excluded)
+     * @param startsWith <code>true</code> if the line must start with the term,
+     *                   <code>false</code> if it must contain it
+     * @return the index of the entry, or <code>-1</code> if none matches
+     */
+    default int searchBackwards(String term, int index, boolean startsWith) {
+        ListIterator<Entry> it = iterator(index);
+        while (it.hasPrevious()) {
+            Entry e = it.previous();
+            if (startsWith ? e.line().startsWith(term) : e.line().contains(term)) {
+                return e.index();
+            }
+        }
+        return -1;
+    }
+
     //
     // Navigation
     //
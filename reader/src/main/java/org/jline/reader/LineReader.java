@@ -354,6 +354,12 @@ public interface LineReader {
      */
     String HISTORY_FILE_SIZE = "history-file-size";
 
+    /**
+     * Maximum number of chars kept by the undo history of a line, each
+     * undoable change also counting for a few chars.
+     */
+    String UNDO_LIMIT = "undo-limit";
+
     Map<String, KeyMap<Binding>> defaultKeyMaps();
 
     enum Option {
@@ -415,6 +421,20 @@ public interface LineReader {
 
         /** if history search is fully case insensitive */
         CASE_INSENSITIVE_SEARCH,
+
+        /**
+         * Read whole lines from the terminal input without any editing nor
+         * display, which is useful when the input is not interactive,
+         * for example when a script is piped into the application.
+         * The prompt is not displayed and key bindings and widgets are not used,
+         * but lines are still parsed to join continuation lines, expanded
+         * and added to the history.
+         * The input is read from {@link org.jline.terminal.Terminal#reader()}
+         * in chunks of 8 KB buffered inside the line reader: when this
+         * option is turned off, whatever followed the last line returned
+         * has already been consumed from the terminal reader and is lost.
+         */
+        BATCH_MODE,
         ;
 
         private final boolean def;
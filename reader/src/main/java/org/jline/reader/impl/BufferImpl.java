@@ -8,6 +8,9 @@
  */
 package org.jline.reader.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import org.jline.reader.Buffer;
@@ -26,6 +29,7 @@ public class BufferImpl implements Buffer
     private int[] buffer;
     private int g0;
     private int g1;
+    private Change change;
 
     public BufferImpl() {
         this(64);
@@ -61,6 +65,9 @@ public class BufferImpl implements Buffer
         if (cursor == length()) {
             return false;
         } else {
+            if (change != null) {
+                change.add(cursor, new int[] { buffer[adjust(cursor)] }, 0, 1, new int[] { ch }, 0, 1);
+            }
             buffer[adjust(cursor)] = ch;
             return true;
         }
@@ -141,6 +148,9 @@ public class BufferImpl implements Buffer
     }
 
     private void write(int[] ucps) {
+        if (change != null) {
+            change.add(cursor, ucps, 0, 0, ucps, 0, ucps.length);
+        }
         moveGapToCursor();
         int len = length() + ucps.length;
         int sz = buffer.length;
@@ -164,6 +174,11 @@ public class BufferImpl implements Buffer
         if (length() == 0) {
             return false;
         }
+        if (change != null) {
+            moveGapToCursor();
+            change.add(0, buffer, 0, g0, null, 0, 0);
+            change.add(0, buffer, g1, buffer.length - g1, null, 0, 0);
+        }
         g0 = 0;
         g1 = buffer.length;
         cursor = 0;
@@ -312,6 +327,11 @@ public class BufferImpl implements Buffer
     public int backspace(final int num) {
         int count = Math.max(Math.min(cursor, num), 0);
         moveGapToCursor();
+        if (count > 0) {
+            if (change != null) {
+                change.add(cursor - count, buffer, g0 - count, count, null, 0, 0);
+            }
+        }
         cursor -= count;
         g0 -= count;
         cursorCol = -1;
@@ -330,6 +350,11 @@ public class BufferImpl implements Buffer
     public int delete(int num) {
         int count = Math.max(Math.min(length() - cursor, num), 0);
         moveGapToCursor();
+        if (count > 0) {
+            if (change != null) {
+                change.add(cursor, buffer, g1, count, null, 0, 0);
+            }
+        }
         g1 += count;
         cursorCol = -1;
         return count;
@@ -349,6 +374,23 @@ public class BufferImpl implements Buffer
             throw new IllegalStateException();
         }
         BufferImpl that = (BufferImpl) buf;
+        if (change != null) {
+            // Only record the part which actually differs
+            int l0 = this.length();
+            int l1 = that.length();
+            int start = 0;
+            while (start < l0 && start < l1 && this.atChar(start) == that.atChar(start)) {
+                start++;
+            }
+            int end = 0;
+            while (end < l0 - start && end < l1 - start
+                    && this.atChar(l0 - end - 1) == that.atChar(l1 - end - 1)) {
+                end++;
+            }
+            int[] removed = this.codePoints(start, l0 - end);
+            int[] inserted = that.codePoints(start, l1 - end);
+            change.add(start, removed, 0, removed.length, inserted, 0, inserted.length);
+        }
         this.g0 = that.g0;
         this.g1 = that.g1;
         this.buffer = that.buffer.clone();
@@ -356,6 +398,167 @@ public class BufferImpl implements Buffer
         this.cursorCol = that.cursorCol;
     }
 
+    /**
+     * Start recording the modifications made to this buffer, until
+     * {@link #endChange()} is called.
+     */
+    public void beginChange() {
+        change = new Change(cursor);
+    }
+
+    /**
+     * Stop recording the modifications made to this buffer.
+     *
+     * @return the recorded change, or <code>null</code> if the content
+     *         of this buffer has not been modified
+     */
+    public Change endChange() {
+        Change c = change;
+        change = null;
+        if (c == null || c.edits.isEmpty()) {
+            return null;
+        }
+        c.cursorAfter = cursor;
+        return c;
+    }
+
+    private int[] codePoints(int start, int end) {
+        int[] cps = new int[end - start];
+        for (int i = start; i < end; i++) {
+            cps[i - start] = atChar(i);
+        }
+        return cps;
+    }
+
+    /**
+     * The modifications made to a buffer between {@link #beginChange()}
+     * and {@link #endChange()}, which can be reverted and applied again.
+     */
+    public static final class Change {
+
+        private static final int[] NONE = new int[0];
+        /**
+         * The weight of a change and of each of its edits, in chars, so that
+         * the memory used by many small changes is accounted for too.
+         */
+        private static final int CHANGE_WEIGHT = 16;
+        private static final int EDIT_WEIGHT = 8;
+
+        private final List<Edit> edits = new ArrayList<>();
+        private final int cursorBefore;
+        private int cursorAfter;
+        private long size = CHANGE_WEIGHT;
+
+        private Change(int cursor) {
+            this.cursorBefore = cursor;
+        }
+
+        private void add(int position, int[] removed, int roff, int rlen, int[] inserted, int ioff, int ilen) {
+            if (rlen == 0 && ilen == 0) {
+                return;
+            }
+            Edit last = edits.isEmpty() ? null : edits.get(edits.size() - 1);
+            if (last != null && rlen == 0 && last.removed.length == 0
+                    && last.position + last.inserted.length == position) {
+                // Consecutive inserts
+                int[] cps = new int[last.inserted.length + ilen];
+                System.arraycopy(last.inserted, 0, cps, 0, last.inserted.length);
+                System.arraycopy(inserted, ioff, cps, last.inserted.length, ilen);
+                last.inserted = cps;
+            } else if (last != null && ilen == 0 && last.inserted.length == 0
+                    && (last.position == position || last.position == position + rlen)) {
+                // Consecutive deletes or backspaces
+                int[] cps = new int[last.removed.length + rlen];
+                if (last.position == position) {
+                    System.arraycopy(last.removed, 0, cps, 0, last.removed.length);
+                    System.arraycopy(removed, roff, cps, last.removed.length, rlen);
+                } else {
+                    System.arraycopy(removed, roff, cps, 0, rlen);
+                    System.arraycopy(last.removed, 0, cps, rlen, last.removed.length);
+                    last.position = position;
+                }
+                last.removed = cps;
+            } else {
+                edits.add(new Edit(position,
+                        rlen > 0 ? Arrays.copyOfRange(removed, roff, roff + rlen) : NONE,
+                        ilen > 0 ? Arrays.copyOfRange(inserted, ioff, ioff + ilen) : NONE));
+                size += EDIT_WEIGHT;
+            }
+            size += rlen + ilen;
+        }
+
+        /**
+         * Returns the number of chars kept by this change, plus a fixed
+         * weight for the change itself and for each of its edits.
+         *
+         * @return the size of this change
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Append the given change to this one, if it starts where this
+         * one ends, so that both are reverted or applied at once.
+         *
+         * @param next the change made to the buffer after this one
+         * @return <code>true</code> if the change has been merged
+         */
+        public boolean merge(Change next) {
+            if (next.cursorBefore != cursorAfter) {
+                return false;
+            }
+            for (Edit edit : next.edits) {
+                add(edit.position, edit.removed, 0, edit.removed.length,
+                        edit.inserted, 0, edit.inserted.length);
+            }
+            cursorAfter = next.cursorAfter;
+            return true;
+        }
+
+        /**
+         * Revert this change on the given buffer.
+         *
+         * @param buffer the buffer to which this change has been applied
+         */
+        public void revert(Buffer buffer) {
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                Edit edit = edits.get(i);
+                buffer.cursor(edit.position);
+                buffer.delete(edit.inserted.length);
+                buffer.write(new String(edit.removed, 0, edit.removed.length));
+            }
+            buffer.cursor(cursorBefore);
+        }
+
+        /**
+         * Apply this change again to the given buffer.
+         *
+         * @param buffer the buffer to which this change has been reverted
+         */
+        public void apply(Buffer buffer) {
+            for (Edit edit : edits) {
+                buffer.cursor(edit.position);
+                buffer.delete(edit.removed.length);
+                buffer.write(new String(edit.inserted, 0, edit.inserted.length));
+            }
+            buffer.cursor(cursorAfter);
+        }
+
+    }
+
+    private static final class Edit {
+        private int position;
+        private int[] removed;
+        private int[] inserted;
+
+        private Edit(int position, int[] removed, int[] inserted) {
+            this.position = position;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+    }
+
     private void moveGapToCursor() {
         if (cursor < g0) {
             int l = g0 - cursor;
@@ -8,11 +8,8 @@
  */
 package org.jline.reader.impl;
 
-import java.util.ListIterator;
-
 import org.jline.reader.Expander;
 import org.jline.reader.History;
-import org.jline.reader.History.Entry;
 
 public class DefaultExpander implements Expander {
 
@@ -71,7 +68,7 @@ public class DefaultExpander implements Expander {
                                     rep = history.get(history.index() - 1);
                                     break;
                                 case '#':
-                                    sb.append(sb.toString());
+                                    sb.append(sb, 0, sb.length());
                                     break;
                                 case '?':
                                     i1 = line.indexOf('?', i + 1);
@@ -119,15 +116,16 @@ public class DefaultExpander implements Expander {
                                 case '8':
                                 case '9':
                                     i1 = i;
+                                    idx = 0;
                                     for (; i < line.length(); i++) {
                                         c = line.charAt(i);
                                         if (c < '0' || c > '9') {
                                             break;
                                         }
+                                        // Values too large to be an index are reported as not found below
+                                        idx = (int) Math.min(Integer.MAX_VALUE, idx * 10L + (c - '0'));
                                     }
-                                    try {
-                                        idx = Integer.parseInt(line.substring(i1, i));
-                                    } catch (NumberFormatException e) {
+                                    if (i == i1) {
                                         throw new IllegalArgumentException((neg ? "!-" : "!") + line.substring(i1, i) + ": event not found");
                                     }
                                     if (neg && idx > 0 && idx <= history.size()) {
@@ -189,19 +187,6 @@ public class DefaultExpander implements Expander {
     }
 
     protected int searchBackwards(History history, String searchTerm, int startIndex, boolean startsWith) {
-        ListIterator<Entry> it = history.iterator(startIndex);
-        while (it.hasPrevious()) {
-            History.Entry e = it.previous();
-            if (startsWith) {
-                if (e.line().startsWith(searchTerm)) {
-                    return e.index();
-                }
-            } else {
-                if (e.line().contains(searchTerm)) {
-                    return e.index();
-                }
-            }
-        }
-        return -1;
+        return history.searchBackwards(searchTerm, startIndex, startsWith);
     }
 }
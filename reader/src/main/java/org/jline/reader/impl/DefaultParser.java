@@ -36,23 +36,41 @@ public class DefaultParser implements Parser {
     private char[] openingBrackets = null;
 
     private char[] closingBrackets = null;
+
+    //
+    // Incremental parsing: the state of the tokenizer at the beginning of
+    // the lines of the last parsed buffer, so that only the lines after the
+    // first modified one need to be parsed again
+    //
+
+    private String lastLine;
+
+    private int lastCursor;
+
+    private ParseContext lastContext;
+
+    private List<String> lastWords;
+
+    private ArgumentList lastResult;
+
+    private final List<State> states = new ArrayList<>();
     
     //
     // Chainable setters
     //
 
     public DefaultParser quoteChars(final char[] chars) {
-        this.quoteChars = chars;
+        setQuoteChars(chars);
         return this;
     }
 
     public DefaultParser escapeChars(final char[] chars) {
-        this.escapeChars = chars;
+        setEscapeChars(chars);
         return this;
     }
 
     public DefaultParser eofOnUnclosedQuote(boolean eofOnUnclosedQuote) {
-        this.eofOnUnclosedQuote = eofOnUnclosedQuote;
+        setEofOnUnclosedQuote(eofOnUnclosedQuote);
         return this;
     }
 
@@ -62,7 +80,7 @@ public class DefaultParser implements Parser {
     }
     
     public DefaultParser eofOnEscapedNewLine(boolean eofOnEscapedNewLine) {
-        this.eofOnEscapedNewLine = eofOnEscapedNewLine;
+        setEofOnEscapedNewLine(eofOnEscapedNewLine);
         return this;
     }
 
@@ -72,6 +90,7 @@ public class DefaultParser implements Parser {
 
     public void setQuoteChars(final char[] chars) {
         this.quoteChars = chars;
+        reset();
     }
 
     public char[] getQuoteChars() {
@@ -80,6 +99,7 @@ public class DefaultParser implements Parser {
 
     public void setEscapeChars(final char[] chars) {
         this.escapeChars = chars;
+        reset();
     }
 
     public char[] getEscapeChars() {
@@ -88,6 +108,7 @@ public class DefaultParser implements Parser {
 
     public void setEofOnUnclosedQuote(boolean eofOnUnclosedQuote) {
         this.eofOnUnclosedQuote = eofOnUnclosedQuote;
+        reset();
     }
 
     public boolean isEofOnUnclosedQuote() {
@@ -96,6 +117,7 @@ public class DefaultParser implements Parser {
 
     public void setEofOnEscapedNewLine(boolean eofOnEscapedNewLine) {
         this.eofOnEscapedNewLine = eofOnEscapedNewLine;
+        reset();
     }
 
     public boolean isEofOnEscapedNewLine() {
@@ -133,21 +155,73 @@ public class DefaultParser implements Parser {
                 i++;
             }
         }
+        reset();
     }
-    
-    public ParsedLine parse(final String line, final int cursor, ParseContext context) {
-        List<String> words = new LinkedList<>();
-        StringBuilder current = new StringBuilder();
+
+    /**
+     * Discard the state kept from the previous parsing.
+     */
+    private synchronized void reset() {
+        lastLine = null;
+        lastWords = null;
+        lastResult = null;
+        states.clear();
+    }
+
+    public synchronized ParsedLine parse(final String line, final int cursor, ParseContext context) {
+        if (lastResult != null && cursor == lastCursor && context == lastContext && line.equals(lastLine)) {
+            return lastResult;
+        }
+        // Find the state at the beginning of the last line which has not
+        // been modified since the previous parsing
+        int common = 0;
+        if (lastLine != null) {
+            int max = Math.min(lastLine.length(), line.length());
+            while (common < max && lastLine.charAt(common) == line.charAt(common)) {
+                common++;
+            }
+        }
+        while (!states.isEmpty() && states.get(states.size() - 1).pos > Math.min(common, cursor)) {
+            states.remove(states.size() - 1);
+        }
+        State state = states.isEmpty() ? null : states.get(states.size() - 1);
+
+        List<String> words;
+        StringBuilder current;
         int wordCursor = -1;
         int wordIndex = -1;
-        int quoteStart = -1;
+        int quoteStart;
         int rawWordCursor = -1;
         int rawWordLength = -1;
-        int rawWordStart = 0;
-        BracketChecker bracketChecker = new BracketChecker();
-        boolean quotedWord = false;
+        int rawWordStart;
+        BracketChecker bracketChecker;
+        boolean quotedWord;
+        int start;
+        if (state != null) {
+            words = new ArrayList<>(lastWords.subList(0, state.words));
+            current = new StringBuilder(state.current);
+            quoteStart = state.quoteStart;
+            rawWordStart = state.rawWordStart;
+            bracketChecker = new BracketChecker(state.missingOpeningBracket, state.nested);
+            quotedWord = state.quotedWord;
+            start = state.pos;
+        } else {
+            words = new ArrayList<>();
+            current = new StringBuilder();
+            quoteStart = -1;
+            rawWordStart = 0;
+            bracketChecker = new BracketChecker();
+            quotedWord = false;
+            start = 0;
+        }
+        lastLine = null;
+        lastResult = null;
 
-        for (int i = 0; (line != null) && (i < line.length()); i++) {
+        for (int i = start; (line != null) && (i < line.length()); i++) {
+            if (i > start && i <= cursor && line.charAt(i - 1) == '\n') {
+                states.add(new State(i, words.size(), current.toString(), quoteStart, quotedWord,
+                        rawWordStart, bracketChecker));
+            }
             // once we reach the cursor, set the
             // position of the selected index
             if (i == cursor) {
@@ -195,6 +269,15 @@ public class DefaultParser implements Parser {
             }
         }
 
+        if (line.length() > start && line.length() <= cursor && line.charAt(line.length() - 1) == '\n') {
+            states.add(new State(line.length(), words.size(), current.toString(), quoteStart, quotedWord,
+                    rawWordStart, bracketChecker));
+        }
+        lastLine = line;
+        // Keep a private copy, the words list is given to the returned
+        // ArgumentList and must not be shared with the next parsings
+        lastWords = new ArrayList<>(words);
+
         if (current.length() > 0 || cursor == line.length()) {
             words.add(current.toString());
             if (rawWordCursor >= 0 && rawWordLength < 0) {
@@ -226,7 +309,10 @@ public class DefaultParser implements Parser {
         }
 
         String openingQuote = quotedWord ? line.substring(quoteStart, quoteStart + 1) : null;
-        return new ArgumentList(line, words, wordIndex, wordCursor, cursor, openingQuote, rawWordCursor, rawWordLength);
+        lastCursor = cursor;
+        lastContext = context;
+        lastResult = new ArgumentList(line, words, wordIndex, wordCursor, cursor, openingQuote, rawWordCursor, rawWordLength);
+        return lastResult;
     }
 
     /**
@@ -349,6 +435,11 @@ public class DefaultParser implements Parser {
         private List<Integer> nested = new ArrayList<>();
         
         public BracketChecker(){}
+
+        public BracketChecker(int missingOpeningBracket, List<Integer> nested) {
+            this.missingOpeningBracket = missingOpeningBracket;
+            this.nested.addAll(nested);
+        }
         
         public void check(final CharSequence buffer, final int pos){
             if (openingBrackets == null || pos < 0) {
@@ -405,6 +496,32 @@ public class DefaultParser implements Parser {
         } 
     }
 
+    /**
+     * The state of the tokenizer at a given position of the line.
+     */
+    private static class State {
+        final int pos;
+        final int words;
+        final String current;
+        final int quoteStart;
+        final boolean quotedWord;
+        final int rawWordStart;
+        final int missingOpeningBracket;
+        final List<Integer> nested;
+
+        State(int pos, int words, String current, int quoteStart, boolean quotedWord,
+              int rawWordStart, BracketChecker bracketChecker) {
+            this.pos = pos;
+            this.words = words;
+            this.current = current;
+            this.quoteStart = quoteStart;
+            this.quotedWord = quotedWord;
+            this.rawWordStart = rawWordStart;
+            this.missingOpeningBracket = bracketChecker.missingOpeningBracket;
+            this.nested = new ArrayList<>(bracketChecker.nested);
+        }
+    }
+
     /**
      * The result of a delimited buffer.
      *
@@ -16,6 +16,7 @@ import java.io.InterruptedIOException;
 import java.time.Instant;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -79,6 +80,7 @@ public class LineReaderImpl implements LineReader, Flushable
     public static final int    DEFAULT_ERRORS = 2;
     public static final long   DEFAULT_BLINK_MATCHING_PAREN = 500L;
     public static final long   DEFAULT_AMBIGUOUS_BINDING = 1000L;
+    public static final long   DEFAULT_UNDO_LIMIT = 4L * 1024 * 1024;
     public static final String DEFAULT_SECONDARY_PROMPT_PATTERN = "%M> ";
     public static final String DEFAULT_OTHERS_GROUP_NAME = "others";
     public static final String DEFAULT_ORIGINAL_GROUP_NAME = "original";
@@ -89,6 +91,9 @@ public class LineReaderImpl implements LineReader, Flushable
 
     private static final int MIN_ROWS = 3;
 
+    /** Default key maps shared between readers, see {@link #defaultKeyMap} */
+    private static final Map<String, KeyMap<Binding>> SHARED_KEYMAPS = new ConcurrentHashMap<>();
+
     public static final String BRACKETED_PASTE_ON = "\033[?2004h";
     public static final String BRACKETED_PASTE_OFF = "\033[?2004l";
     public static final String BRACKETED_PASTE_BEGIN = "\033[200~";
@@ -180,6 +185,11 @@ public class LineReaderImpl implements LineReader, Flushable
     // Reading buffers
     protected final BindingReader bindingReader;
 
+    /** Input buffer used in {@link Option#BATCH_MODE} */
+    private final char[] batchChars = new char[8192];
+    private int batchStart;
+    private int batchEnd;
+
 
     /**
      * VI character find
@@ -211,6 +221,25 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected KillRing killRing = new KillRing();
 
+    /**
+     * The undo history of the line being read, recorded as the changes
+     * made to the buffer by each widget.
+     */
+    protected UndoTree<BufferImpl.Change> undoChanges = new UndoTree<>(c -> c.apply(buf), c -> c.revert(buf));
+    /**
+     * Whether the last change recorded in {@link #undoChanges} comes from
+     * a self-insert widget, in which case the next one may be merged into it.
+     */
+    protected boolean undoSelfInsert;
+    /**
+     * The undo history used to be recorded as copies of the whole buffer
+     * in this tree.
+     *
+     * @deprecated this tree is no longer fed nor used by this reader,
+     *             it is only kept so that subclasses referencing it still
+     *             compile; use {@link #undoChanges} instead
+     */
+    @Deprecated
     protected UndoTree<Buffer> undo = new UndoTree<>(this::setBuffer);
     protected boolean isUndo;
 
@@ -476,6 +505,14 @@ public class LineReaderImpl implements LineReader, Flushable
             throw new IllegalStateException();
         }
 
+        if (isSet(Option.BATCH_MODE)) {
+            try {
+                return readBatchLine(maskingCallback, buffer);
+            } finally {
+                startedReading.set(false);
+            }
+        }
+
         Thread readLineThread = Thread.currentThread();
         SignalHandler previousIntrHandler = null;
         SignalHandler previousWinchHandler = null;
@@ -519,7 +556,9 @@ public class LineReaderImpl implements LineReader, Flushable
                 nextHistoryId = -1;
             }
             nextCommandFromHistory = false;
-            undo.clear();
+            undoChanges.clear();
+            undoChanges.setLimit(getLong(UNDO_LIMIT, DEFAULT_UNDO_LIMIT), BufferImpl.Change::size);
+            undoSelfInsert = false;
             parsedLine = null;
             keyMap = MAIN;
 
@@ -557,8 +596,6 @@ public class LineReaderImpl implements LineReader, Flushable
 
                 callWidget(CALLBACK_INIT);
 
-                undo.newState(buf.copy());
-
                 // Draw initial prompt
                 redrawLine();
                 redisplay();
@@ -598,13 +635,29 @@ public class LineReaderImpl implements LineReader, Flushable
                 try {
                     lock.lock();
                     // Get executable widget
-                    Buffer copy = buf.copy();
+                    // (buf is final and always a BufferImpl)
+                    ((BufferImpl) buf).beginChange();
                     Widget w = getWidget(o);
-                    if (!w.apply()) {
-                        beep();
+                    boolean applied;
+                    try {
+                        applied = w.apply();
+                    } finally {
+                        BufferImpl.Change change = ((BufferImpl) buf).endChange();
+                        boolean selfInsert = o instanceof Reference
+                                && SELF_INSERT.equals(((Reference) o).name());
+                        if (!isUndo && change != null) {
+                            if (selfInsert && undoSelfInsert) {
+                                // Consecutive chars typed are undone at once
+                                undoChanges.newState(change, BufferImpl.Change::merge);
+                            } else {
+                                undoChanges.newState(change);
+                            }
+                        }
+                        undoSelfInsert = selfInsert && !isUndo
+                                && (change != null || undoSelfInsert);
                     }
-                    if (!isUndo && !copy.toString().equals(buf.toString())) {
-                        undo.newState(buf.copy());
+                    if (!applied) {
+                        beep();
                     }
 
                     switch (state) {
@@ -665,6 +718,111 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
     
+    /**
+     * Read a line in {@link Option#BATCH_MODE}: the input is read in bulk and
+     * split on new lines, without going through the key bindings, widgets and
+     * display.  Lines are joined while the parser asks for more input.
+     */
+    protected String readBatchLine(MaskingCallback maskingCallback, String buffer) throws UserInterruptException, EndOfFileException {
+        this.maskingCallback = maskingCallback;
+        parsedLine = null;
+        if (history != null) {
+            history.attach(this);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (buffer != null) {
+            sb.append(buffer);
+        }
+        Thread readLineThread = Thread.currentThread();
+        SignalHandler previousIntrHandler = terminal.handle(Signal.INT, signal -> readLineThread.interrupt());
+        try {
+            String line;
+            boolean continued = false;
+            while (true) {
+                boolean eof = !readBatchChars(sb);
+                if (eof && continued) {
+                    // The input ends where the parser asked for more
+                    sb.setLength(sb.length() - 1);
+                }
+                if (eof && sb.length() == 0) {
+                    throw new EndOfFileException();
+                }
+                line = sb.toString();
+                if (!isSet(Option.DISABLE_EVENT_EXPANSION)) {
+                    try {
+                        line = expander.expandHistory(history, line);
+                    } catch (IllegalArgumentException e) {
+                        // Ignore
+                    }
+                }
+                try {
+                    parsedLine = parser.parse(line, line.length(), ParseContext.ACCEPT_LINE);
+                    break;
+                } catch (EOFError e) {
+                    if (eof) {
+                        // No more input can complete the line, so parse
+                        // it as is for getParsedLine()
+                        try {
+                            parsedLine = parser.parse(line, line.length(), ParseContext.COMPLETE);
+                        } catch (SyntaxError e2) {
+                            // Ignore
+                        }
+                        break;
+                    }
+                    sb.append('\n');
+                    continued = true;
+                } catch (SyntaxError e) {
+                    break;
+                }
+            }
+            buf.clear();
+            buf.write(line);
+            String str = finishBuffer();
+            history.moveToEnd();
+            return str;
+        } catch (InterruptedIOException e) {
+            throw new UserInterruptException(sb.toString());
+        } catch (IOException e) {
+            throw new IOError(e);
+        } finally {
+            terminal.handle(Signal.INT, previousIntrHandler);
+        }
+    }
+
+    /**
+     * Append the next line of the input to the given builder, without
+     * the line terminator.
+     *
+     * @return <code>false</code> if the end of the input has been reached
+     */
+    private boolean readBatchChars(StringBuilder sb) throws IOException {
+        boolean read = false;
+        while (true) {
+            if (batchStart >= batchEnd) {
+                int nb = terminal.reader().readBuffered(batchChars);
+                if (nb < 0) {
+                    return read;
+                }
+                batchStart = 0;
+                batchEnd = nb;
+            }
+            read = true;
+            for (int i = batchStart; i < batchEnd; i++) {
+                if (batchChars[i] == '\n') {
+                    int end = i > batchStart && batchChars[i - 1] == '\r' ? i - 1 : i;
+                    sb.append(batchChars, batchStart, end - batchStart);
+                    if (i == batchStart && sb.length() > 0 && sb.charAt(sb.length() - 1) == '\r') {
+                        sb.setLength(sb.length() - 1);
+                    }
+                    batchStart = i + 1;
+                    return true;
+                }
+            }
+            sb.append(batchChars, batchStart, batchEnd - batchStart);
+            batchStart = batchEnd;
+        }
+    }
+
     private boolean isTerminalDumb(){
         return Terminal.TYPE_DUMB.equals(terminal.getType())
                 || Terminal.TYPE_DUMB_COLOR.equals(terminal.getType());
@@ -849,6 +1007,19 @@ public class LineReaderImpl implements LineReader, Flushable
         }
     }
 
+    protected String doReadStringUntil(String sequence) {
+        if (lock.isHeldByCurrentThread()) {
+            try {
+                lock.unlock();
+                return bindingReader.readStringUntil(sequence);
+            } finally {
+                lock.lock();
+            }
+        } else {
+            return bindingReader.readStringUntil(sequence);
+        }
+    }
+
     /**
      * Read from the input stream and decode an operation from the key map.
      *
@@ -2202,8 +2373,8 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected boolean undo() {
         isUndo = true;
-        if (undo.canUndo()) {
-            undo.undo();
+        if (undoChanges.canUndo()) {
+            undoChanges.undo();
             return true;
         }
         return false;
@@ -2211,8 +2382,8 @@ public class LineReaderImpl implements LineReader, Flushable
 
     protected boolean redo() {
         isUndo = true;
-        if (undo.canRedo()) {
-            undo.redo();
+        if (undoChanges.canRedo()) {
+            undoChanges.redo();
             return true;
         }
         return false;
@@ -3937,50 +4108,40 @@ public class LineReaderImpl implements LineReader, Flushable
         AttributedStringBuilder sb = new AttributedStringBuilder();
         String secondaryPromptPattern = getString(SECONDARY_PROMPT_PATTERN, DEFAULT_SECONDARY_PROMPT_PATTERN);
         boolean needsMessage = secondaryPromptPattern.contains("%M");
-        AttributedStringBuilder buf = new AttributedStringBuilder();
         int width = 0;
         List<String> missings = new ArrayList<>();
-        if (computePrompts && secondaryPromptPattern.contains("%P")) {
-            width = prompt.columnLength();
+        if (computePrompts && needsMessage) {
+            // The parser keeps its state between the lines,
+            // so that each line is only parsed once
+            String str = strAtt.toString();
+            int end = 0;
             for (int line = 0; line < lines.size() - 1; line++) {
-                AttributedString prompt;
-                buf.append(lines.get(line)).append("\n");
+                end += lines.get(line).length() + 1;
                 String missing = "";
-                if (needsMessage) {
-                    try {
-                        parser.parse(buf.toString(), buf.length(), ParseContext.SECONDARY_PROMPT);
-                    } catch (EOFError e) {
-                        missing = e.getMissing();
-                    } catch (SyntaxError e) {
-                        // Ignore
-                    }
+                try {
+                    parser.parse(str.substring(0, end), end, ParseContext.SECONDARY_PROMPT);
+                } catch (EOFError e) {
+                    missing = e.getMissing();
+                } catch (SyntaxError e) {
+                    // Ignore
                 }
                 missings.add(missing);
-                prompt = expandPromptPattern(secondaryPromptPattern, 0, missing, line + 1);
+            }
+        }
+        if (computePrompts && secondaryPromptPattern.contains("%P")) {
+            width = prompt.columnLength();
+            for (int line = 0; line < lines.size() - 1; line++) {
+                String missing = needsMessage ? missings.get(line) : "";
+                AttributedString prompt = expandPromptPattern(secondaryPromptPattern, 0, missing, line + 1);
                 width = Math.max(width, prompt.columnLength());
             }
-            buf.setLength(0);
         }
         int line = 0;
         while (line < lines.size() - 1) {
             sb.append(lines.get(line)).append("\n");
-            buf.append(lines.get(line)).append("\n");
             AttributedString prompt;
             if (computePrompts) {
-                String missing = "";
-                if (needsMessage) {
-                    if (missings.isEmpty()) {
-                        try {
-                            parser.parse(buf.toString(), buf.length(), ParseContext.SECONDARY_PROMPT);
-                        } catch (EOFError e) {
-                            missing = e.getMissing();
-                        } catch (SyntaxError e) {
-                            // Ignore
-                        }
-                    } else {
-                        missing = missings.get(line);
-                    }
-                }
+                String missing = needsMessage ? missings.get(line) : "";
                 prompt = expandPromptPattern(secondaryPromptPattern, width, missing, line + 1);
             } else {
                 prompt = prompts.get(line);
@@ -3990,7 +4151,6 @@ public class LineReaderImpl implements LineReader, Flushable
             line++;
         }
         sb.append(lines.get(line));
-        buf.append(lines.get(line));
         return sb.toAttributedString();
     }
 
@@ -4477,6 +4637,8 @@ public class LineReaderImpl implements LineReader, Flushable
 
     private class MenuSupport implements Supplier<AttributedString> {
         final List<Candidate> possible;
+        final List<Object> groups;
+        final int maxWidth;
         final BiFunction<CharSequence, Boolean, CharSequence> escaper;
         int selection;
         int topLine;
@@ -4493,7 +4655,8 @@ public class LineReaderImpl implements LineReader, Flushable
             this.topLine = 0;
             this.word = "";
             this.completed = completed;
-            computePost(original, null, possible, completed);
+            this.groups = computeGroups(original, possible, isSet(Option.AUTO_GROUP), isSet(Option.GROUP));
+            this.maxWidth = maxWidth(groups, display::wcwidth);
             next();
         }
 
@@ -4592,8 +4755,8 @@ public class LineReaderImpl implements LineReader, Flushable
             word = escaper.apply(completion().value(), true).toString();
             buf.write(word);
 
-            // Compute displayed prompt
-            PostResult pr = computePost(possible, completion(), null, completed);
+            // Compute the layout first, and only render the visible rows
+            PostResult pr = render(0, 0);
             AttributedString text = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
             int promptLines = text.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
             if (pr.lines > size.getRows() - promptLines) {
@@ -4605,13 +4768,14 @@ public class LineReaderImpl implements LineReader, Flushable
                         topLine = pr.selectedLine - displayed + 1;
                     }
                 }
-                AttributedString post = pr.post;
+                topLine = Math.max(0, Math.min(topLine, pr.lines - displayed));
+                AttributedString post = render(topLine, topLine + displayed).post;
                 if (post.length() > 0 && post.charAt(post.length() - 1) != '\n') {
                     post = new AttributedStringBuilder(post.length() + 1)
                             .append(post).append("\n").toAttributedString();
                 }
                 List<AttributedString> lines = post.columnSplitLength(size.getColumns(), true, display.delayLineWrap());
-                List<AttributedString> sub = new ArrayList<>(lines.subList(topLine, topLine + displayed));
+                List<AttributedString> sub = new ArrayList<>(lines.subList(0, Math.min(lines.size(), displayed)));
                 sub.add(new AttributedStringBuilder()
                         .style(AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN))
                         .append("rows ")
@@ -4619,17 +4783,22 @@ public class LineReaderImpl implements LineReader, Flushable
                         .append(" to ")
                         .append(Integer.toString(topLine + displayed))
                         .append(" of ")
-                        .append(Integer.toString(lines.size()))
+                        .append(Integer.toString(pr.lines))
                         .append("\n")
                         .style(AttributedStyle.DEFAULT).toAttributedString());
                 computed = AttributedString.join(AttributedString.EMPTY, sub);
             } else {
-                computed = pr.post;
+                computed = render(0, Integer.MAX_VALUE).post;
             }
             lines = pr.lines;
             columns = (possible.size() + lines - 1) / lines;
         }
 
+        private PostResult render(int fromLine, int toLine) {
+            return toColumns(groups, completion(), completed, size.getColumns(), maxWidth,
+                    isSet(Option.LIST_ROWS_FIRST), fromLine, toLine);
+        }
+
         @Override
         public AttributedString get() {
             return computed;
@@ -4638,14 +4807,11 @@ public class LineReaderImpl implements LineReader, Flushable
     }
 
     protected boolean doMenu(List<Candidate> original, String completed, BiFunction<CharSequence, Boolean, CharSequence> escaper) {
-        // Reorder candidates according to display order
-        final List<Candidate> possible = new ArrayList<>();
         boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE);
         original.sort(getCandidateComparator(caseInsensitive, completed));
         mergeCandidates(original);
-        computePost(original, null, possible, completed);
 
-        // Build menu support
+        // Build menu support, which reorders candidates according to display order
         MenuSupport menuSupport = new MenuSupport(original, completed, escaper);
         post = menuSupport;
         redisplay();
@@ -4717,8 +4883,7 @@ public class LineReaderImpl implements LineReader, Flushable
         mergeCandidates(possible);
         AttributedString text = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
         int promptLines = text.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
-        PostResult postResult = computePost(possible, null, null, completed);
-        int lines = postResult.lines;
+        int lines = computePost(possible, null, completed, 0, 0).lines;
         int listMax = getInt(LIST_MAX, DEFAULT_LIST_MAX);
         if (listMax > 0 && possible.size() >= listMax
                 || lines >= size.getRows() - promptLines) {
@@ -4735,25 +4900,19 @@ public class LineReaderImpl implements LineReader, Flushable
 
         boolean caseInsensitive = isSet(Option.CASE_INSENSITIVE);
         StringBuilder sb = new StringBuilder();
+        // Each typed character narrows the previous list: the filtered candidates
+        // all match the typed word, so the order of the sorted list still holds.
+        Deque<List<Candidate>> filtered = new ArrayDeque<>();
+        filtered.push(possible.stream()
+                .sorted(getCandidateComparator(caseInsensitive, completed))
+                .collect(Collectors.toList()));
         while (true) {
             String current = completed + sb.toString();
-            List<Candidate> cands;
-            if (sb.length() > 0) {
-                cands = possible.stream()
-                        .filter(c -> caseInsensitive
-                                    ? c.value().toLowerCase().startsWith(current.toLowerCase())
-                                    : c.value().startsWith(current))
-                        .sorted(getCandidateComparator(caseInsensitive, current))
-                        .collect(Collectors.toList());
-            } else {
-                cands = possible.stream()
-                        .sorted(getCandidateComparator(caseInsensitive, current))
-                        .collect(Collectors.toList());
-            }
+            List<Candidate> cands = filtered.peek();
             post = () -> {
                 AttributedString t = insertSecondaryPrompts(AttributedStringBuilder.append(prompt, buf.toString()), new ArrayList<>());
                 int pl = t.columnSplitLength(size.getColumns(), false, display.delayLineWrap()).size();
-                PostResult pr = computePost(cands, null, null, current);
+                PostResult pr = computePost(cands, null, current, 0, 0);
                 if (pr.lines >= size.getRows() - pl) {
                     post = null;
                     int oldCursor = buf.cursor();
@@ -4761,14 +4920,15 @@ public class LineReaderImpl implements LineReader, Flushable
                     redisplay(false);
                     buf.cursor(oldCursor);
                     println();
-                    List<AttributedString> ls = postResult.post.columnSplitLength(size.getColumns(), false, display.delayLineWrap());
+                    AttributedString all = computePost(cands, null, current, 0, Integer.MAX_VALUE).post;
+                    List<AttributedString> ls = all.columnSplitLength(size.getColumns(), false, display.delayLineWrap());
                     Display d = new Display(terminal, false);
                     d.resize(size.getRows(), size.getColumns());
                     d.update(ls, -1);
                     redrawLine();
                     return new AttributedString("");
                 }
-                return pr.post;
+                return computePost(cands, null, current, 0, Integer.MAX_VALUE).post;
             };
             if (!runLoop) {
                 return false;
@@ -4786,10 +4946,18 @@ public class LineReaderImpl implements LineReader, Flushable
                     } else {
                         sb.setLength(sb.length() - 1);
                         buf.backspace();
+                        filtered.pop();
                     }
                 } else if (SELF_INSERT.equals(name)) {
                     sb.append(getLastBinding());
                     buf.write(getLastBinding());
+                    String word = completed + sb.toString();
+                    String lword = word.toLowerCase();
+                    filtered.push(cands.stream()
+                            .filter(c -> caseInsensitive
+                                        ? c.value().toLowerCase().startsWith(lword)
+                                        : c.value().startsWith(word))
+                            .collect(Collectors.toList()));
                     if (cands.isEmpty()) {
                         post = null;
                         return false;
@@ -4832,6 +5000,21 @@ public class LineReaderImpl implements LineReader, Flushable
     }
 
     protected PostResult computePost(List<Candidate> possible, Candidate selection, List<Candidate> ordered, String completed, Function<String, Integer> wcwidth, int width, boolean autoGroup, boolean groupName, boolean rowsFirst) {
+        List<Object> strings = computeGroups(possible, ordered, autoGroup, groupName);
+        return toColumns(strings, selection, completed, wcwidth, width, rowsFirst);
+    }
+
+    /**
+     * Compute the layout of the candidates, but only render the lines
+     * between <code>fromLine</code> and <code>toLine</code>.
+     */
+    private PostResult computePost(List<Candidate> possible, Candidate selection, String completed, int fromLine, int toLine) {
+        List<Object> strings = computeGroups(possible, null, isSet(Option.AUTO_GROUP), isSet(Option.GROUP));
+        return toColumns(strings, selection, completed, size.getColumns(), maxWidth(strings, display::wcwidth),
+                isSet(Option.LIST_ROWS_FIRST), fromLine, toLine);
+    }
+
+    private List<Object> computeGroups(List<Candidate> possible, List<Candidate> ordered, boolean autoGroup, boolean groupName) {
         List<Object> strings = new ArrayList<>();
         if (groupName) {
             Comparator<String> groupComparator = getGroupComparator();
@@ -4875,7 +5058,7 @@ public class LineReaderImpl implements LineReader, Flushable
                 ordered.addAll(sorted.values());
             }
         }
-        return toColumns(strings, selection, completed, wcwidth, width, rowsFirst);
+        return strings;
     }
 
     private static final String DESC_PREFIX = "(";
@@ -4883,9 +5066,12 @@ public class LineReaderImpl implements LineReader, Flushable
     private static final int MARGIN_BETWEEN_DISPLAY_AND_DESC = 1;
     private static final int MARGIN_BETWEEN_COLUMNS = 3;
 
-    @SuppressWarnings("unchecked")
     protected PostResult toColumns(List<Object> items, Candidate selection, String completed, Function<String, Integer> wcwidth, int width, boolean rowsFirst) {
-        int[] out = new int[2];
+        return toColumns(items, selection, completed, width, maxWidth(items, wcwidth), rowsFirst, 0, Integer.MAX_VALUE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int maxWidth(List<Object> items, Function<String, Integer> wcwidth) {
         // TODO: support Option.LIST_PACKED
         // Compute column width
         int maxWidth = 0;
@@ -4907,10 +5093,15 @@ public class LineReaderImpl implements LineReader, Flushable
                 }
             }
         }
+        return maxWidth;
+    }
+
+    private PostResult toColumns(List<Object> items, Candidate selection, String completed, int width, int maxWidth, boolean rowsFirst, int fromLine, int toLine) {
+        int[] out = new int[2];
         // Build columns
         AttributedStringBuilder sb = new AttributedStringBuilder();
         for (Object list : items) {
-            toColumns(list, width, maxWidth, sb, selection, completed, rowsFirst, out);
+            toColumns(list, width, maxWidth, sb, selection, completed, rowsFirst, out, fromLine, toLine);
         }
         if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '\n') {
             sb.setLength(sb.length() - 1);
@@ -4918,17 +5109,28 @@ public class LineReaderImpl implements LineReader, Flushable
         return new PostResult(sb.toAttributedString(), out[0], out[1]);
     }
 
-    @SuppressWarnings("unchecked")
     protected void toColumns(Object items, int width, int maxWidth, AttributedStringBuilder sb, Candidate selection, String completed, boolean rowsFirst, int[] out) {
+        toColumns(items, width, maxWidth, sb, selection, completed, rowsFirst, out, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lay out the items in columns.  Only the lines between <code>fromLine</code>
+     * and <code>toLine</code> are rendered, but the number of lines and the line
+     * of the selected candidate are computed for all the items.
+     */
+    @SuppressWarnings("unchecked")
+    private void toColumns(Object items, int width, int maxWidth, AttributedStringBuilder sb, Candidate selection, String completed, boolean rowsFirst, int[] out, int fromLine, int toLine) {
         if (maxWidth <= 0 || width <= 0) {
             return;
         }
         // This is a group
         if (items instanceof String) {
-            sb.style(getCompletionStyleGroup())
-                    .append((String) items)
-                    .style(AttributedStyle.DEFAULT)
-                    .append("\n");
+            if (out[0] >= fromLine && out[0] < toLine) {
+                sb.style(getCompletionStyleGroup())
+                        .append((String) items)
+                        .style(AttributedStyle.DEFAULT)
+                        .append("\n");
+            }
             out[0]++;
         }
         // This is a Candidate list
@@ -4949,7 +5151,17 @@ public class LineReaderImpl implements LineReader, Flushable
             } else {
                 index = (i, j) -> j * lines + i;
             }
-            for (int i = 0; i < lines; i++) {
+            if (selection != null) {
+                for (int idx = 0; idx < candidates.size(); idx++) {
+                    if (candidates.get(idx) == selection) {
+                        out[1] = out[0] + (rowsFirst ? idx / columns : idx % lines);
+                        break;
+                    }
+                }
+            }
+            int first = Math.max(0, fromLine - out[0]);
+            int last = (int) Math.min(lines, (long) toLine - out[0]);
+            for (int i = first; i < last; i++) {
                 for (int j = 0; j < columns; j++) {
                     int idx = index.applyAsInt(i, j);
                     if (idx < candidates.size()) {
@@ -4973,7 +5185,6 @@ public class LineReaderImpl implements LineReader, Flushable
                             rw += DESC_PREFIX.length() + DESC_SUFFIX.length();
                         }
                         if (cand == selection) {
-                            out[1] = i;
                             sb.style(getCompletionStyleSelection());
                             if (left.toString().regionMatches(
                                     isSet(Option.CASE_INSENSITIVE), 0, completed, 0, completed.length())) {
@@ -5370,28 +5581,10 @@ public class LineReaderImpl implements LineReader, Flushable
     }
 
     public boolean beginPaste() {
-        final Object SELF_INSERT = new Object();
-        final Object END_PASTE = new Object();
-        KeyMap<Object> keyMap = new KeyMap<>();
-        keyMap.setUnicode(SELF_INSERT);
-        keyMap.setNomatch(SELF_INSERT);
-        keyMap.setAmbiguousTimeout(0);
-        keyMap.bind(END_PASTE, BRACKETED_PASTE_END);
-        StringBuilder sb = new StringBuilder();
-        while (true) {
-            Object b = doReadBinding(keyMap, null);
-            if (b == END_PASTE) {
-                break;
-            }
-            String s = getLastBinding();
-            if ("\r".equals(s)) {
-                s = "\n";
-            }
-            sb.append(s);
-        }
+        String str = doReadStringUntil(BRACKETED_PASTE_END);
         regionActive = RegionType.PASTE;
         regionMark = getBuffer().cursor();
-        getBuffer().write(sb);
+        getBuffer().write(str.replace('\r', '\n'));
         return true;
     }
 
@@ -5529,19 +5722,16 @@ public class LineReaderImpl implements LineReader, Flushable
 
     @Override
     public Map<String, KeyMap<Binding>> defaultKeyMaps() {
+        Attributes attr = getBoolean(BIND_TTY_SPECIAL_CHARS, true) ? terminal.getAttributes() : null;
         Map<String, KeyMap<Binding>> keyMaps = new HashMap<>();
-        keyMaps.put(EMACS, emacs());
-        keyMaps.put(VICMD, viCmd());
-        keyMaps.put(VIINS, viInsertion());
-        keyMaps.put(MENU, menu());
-        keyMaps.put(VIOPP, viOpp());
-        keyMaps.put(VISUAL, visual());
-        keyMaps.put(SAFE, safe());
-        if (getBoolean(BIND_TTY_SPECIAL_CHARS, true)) {
-            Attributes attr = terminal.getAttributes();
-            bindConsoleChars(keyMaps.get(EMACS), attr);
-            bindConsoleChars(keyMaps.get(VIINS), attr);
-        }
+        keyMaps.put(EMACS, defaultKeyMap(EMACS, this::emacs, attr));
+        keyMaps.put(VICMD, defaultKeyMap(VICMD, this::viCmd, null));
+        keyMaps.put(VIINS, defaultKeyMap(VIINS, this::viInsertion, attr));
+        keyMaps.put(MENU, defaultKeyMap(MENU, this::menu, null));
+        keyMaps.put(VIOPP, defaultKeyMap(VIOPP, this::viOpp, null));
+        // the visual key map binds a widget of this reader, so it can not be shared
+        keyMaps.put(VISUAL, new KeyMap<>(this::visual));
+        keyMaps.put(SAFE, defaultKeyMap(SAFE, this::safe, null));
         // Put default
         for (KeyMap<Binding> keyMap : keyMaps.values()) {
             keyMap.setUnicode(new Reference(SELF_INSERT));
@@ -5552,6 +5742,30 @@ public class LineReaderImpl implements LineReader, Flushable
         return keyMaps;
     }
 
+    /**
+     * Returns a key map which is only built when first used.  The bindings
+     * only depend on the terminal capabilities and special chars, so they are
+     * shared with the other readers using the same kind of terminal until
+     * modified.  Subclasses may override the builders, in which case the
+     * bindings are not shared.
+     */
+    private KeyMap<Binding> defaultKeyMap(String name, Supplier<KeyMap<Binding>> builder, Attributes attr) {
+        Supplier<KeyMap<Binding>> supplier = attr == null ? builder : () -> {
+            KeyMap<Binding> keyMap = builder.get();
+            bindConsoleChars(keyMap, attr);
+            return keyMap;
+        };
+        if (getClass() != LineReaderImpl.class) {
+            return new KeyMap<>(supplier);
+        }
+        String key = name + "|" + terminal.getClass().getName() + "|" + terminal.getType()
+                + (attr == null ? "" : "|" + attr.getControlChar(ControlChar.VERASE)
+                        + "|" + attr.getControlChar(ControlChar.VWERASE)
+                        + "|" + attr.getControlChar(ControlChar.VKILL)
+                        + "|" + attr.getControlChar(ControlChar.VLNEXT));
+        return new KeyMap<>(() -> SHARED_KEYMAPS.computeIfAbsent(key, k -> supplier.get()));
+    }
+
     public KeyMap<Binding> emacs() {
         KeyMap<Binding> emacs = new KeyMap<>();
         bindKeys(emacs);
@@ -5839,11 +6053,10 @@ public class LineReaderImpl implements LineReader, Flushable
     }
 
     private void bindKeys(KeyMap<Binding> emacs) {
-        Widget beep = namedWidget("beep", this::beep);
         Stream.of(Capability.values())
                 .filter(c -> c.name().startsWith("key_"))
                 .map(this::key)
-                .forEach(k -> bind(emacs, beep, k));
+                .forEach(k -> bind(emacs, BEEP, k));
     }
 
     private void bindArrowKeys(KeyMap<Binding> map) {
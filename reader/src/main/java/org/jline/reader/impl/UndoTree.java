@@ -8,38 +8,105 @@
  */
 package org.jline.reader.impl;
 
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 /**
  * Simple undo tree.
  * Note that the first added state can't be undone
+ *
+ * The tree can either store states, in which case the given consumer is used
+ * to restore a state, or changes, in which case the consumers are used to
+ * revert and apply again a change, and all changes can be undone.
  */
 public class UndoTree<T> {
 
     private final Consumer<T> state;
+    private final Consumer<T> revert;
     private final Node parent;
     private Node current;
+    private ToLongFunction<T> weigher = t -> 1;
+    private long limit = Long.MAX_VALUE;
+    private long size;
 
     public UndoTree(Consumer<T> s) {
-        state = s;
+        this(s, null);
+    }
+
+    /**
+     * Create an undo tree storing changes.
+     *
+     * @param apply the consumer used to apply a change again when redoing
+     * @param revert the consumer used to revert a change when undoing
+     */
+    public UndoTree(Consumer<T> apply, Consumer<T> revert) {
+        this.state = apply;
+        this.revert = revert;
         parent = new Node(null);
         parent.left = parent;
         clear();
     }
 
+    /**
+     * Limit the size of the states or changes kept.  When the total size
+     * exceeds the limit, the oldest ones are discarded.
+     *
+     * @param limit the maximum size
+     * @param weigher the function computing the size of a state or change
+     */
+    public void setLimit(long limit, ToLongFunction<T> weigher) {
+        this.limit = limit;
+        this.weigher = weigher;
+        this.size = 0;
+        for (Node node = parent.right; node != null; node = node.right) {
+            node.weight = weigher.applyAsLong(node.state);
+            size += node.weight;
+        }
+        trim();
+    }
+
     public void clear() {
         current = parent;
+        parent.right = null;
+        size = 0;
     }
 
     public void newState(T state) {
+        for (Node node = current.right; node != null; node = node.right) {
+            size -= node.weight;
+        }
         Node node = new Node(state);
         current.right = node;
         node.left = current;
         current = node;
+        node.weight = weigher.applyAsLong(state);
+        size += node.weight;
+        trim();
+    }
+
+    /**
+     * Merge the given state or change into the current one when possible,
+     * or add it as a new one otherwise.  States are only merged when
+     * there is nothing to redo.
+     *
+     * @param state the new state or change
+     * @param merger the function merging its second argument into its
+     *               first one, returning <code>false</code> if it can't
+     */
+    public void newState(T state, BiPredicate<T, T> merger) {
+        if (current != parent && current.right == null && merger.test(current.state, state)) {
+            size -= current.weight;
+            current.weight = weigher.applyAsLong(current.state);
+            size += current.weight;
+            trim();
+        } else {
+            newState(state);
+        }
     }
 
     public boolean canUndo() {
-        return current.left != parent;
+        return revert != null ? current != parent : current.left != parent;
     }
 
     public boolean canRedo() {
@@ -50,8 +117,13 @@ public class UndoTree<T> {
         if (!canUndo()) {
             throw new IllegalStateException("Cannot undo.");
         }
-        current = current.left;
-        state.accept(current.state);
+        if (revert != null) {
+            revert.accept(current.state);
+            current = current.left;
+        } else {
+            current = current.left;
+            state.accept(current.state);
+        }
     }
 
     public void redo() {
@@ -62,8 +134,20 @@ public class UndoTree<T> {
         state.accept(current.state);
     }
 
+    private void trim() {
+        while (size > limit && parent.right != null && parent.right != current) {
+            Node oldest = parent.right;
+            parent.right = oldest.right;
+            if (oldest.right != null) {
+                oldest.right.left = parent;
+            }
+            size -= oldest.weight;
+        }
+    }
+
     private class Node {
         private final T state;
+        private long weight;
         private Node left = null;
         private Node right = null;
 
@@ -8,19 +8,31 @@
  */
 package org.jline.reader.impl.completer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
 import org.jline.reader.LineReader;
 import org.jline.reader.ParsedLine;
+import org.jline.utils.Log;
 
 /**
  * Completer which contains multiple completers and aggregates them together.
  *
+ * When an executor is set, the completers are invoked concurrently on this
+ * executor, and the candidates of the completers which have not finished
+ * before the timeout are discarded.  The candidates are always added in
+ * the order of the completers.
+ *
  * @author <a href="mailto:jason@planet57.com">Jason Dillon</a>
  * @since 2.3
  */
@@ -28,6 +40,8 @@ public class AggregateCompleter
     implements Completer
 {
     private final Collection<Completer> completers;
+    private ExecutorService executor;
+    private long timeout;
 
     /**
      * Construct an AggregateCompleter with the given completers.
@@ -59,6 +73,52 @@ public class AggregateCompleter
         return completers;
     }
 
+    //
+    // Chainable setters
+    //
+
+    public AggregateCompleter executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public AggregateCompleter timeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    //
+    // Java bean getters and setters
+    //
+
+    /**
+     * Set the executor used to invoke the completers concurrently,
+     * or <code>null</code> to invoke them sequentially.
+     *
+     * @param executor the executor
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the time in milliseconds given to the completers when they
+     * are invoked concurrently, or <code>0</code> to wait for all of them.
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
     /**
      * Perform a completion operation across all aggregated completers.
      *
@@ -70,7 +130,48 @@ public class AggregateCompleter
     public void complete(LineReader reader, final ParsedLine line, final List<Candidate> candidates) {
         Objects.requireNonNull(line);
         Objects.requireNonNull(candidates);
-        completers.forEach(c -> c.complete(reader, line, candidates));
+        if (executor == null) {
+            completers.forEach(c -> c.complete(reader, line, candidates));
+        } else {
+            completeConcurrently(reader, line, candidates);
+        }
+    }
+
+    private void completeConcurrently(LineReader reader, final ParsedLine line, final List<Candidate> candidates) {
+        List<Future<List<Candidate>>> futures = new ArrayList<>();
+        for (Completer completer : completers) {
+            futures.add(executor.submit(() -> {
+                List<Candidate> list = new ArrayList<>();
+                completer.complete(reader, line, list);
+                return list;
+            }));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            for (Future<List<Candidate>> future : futures) {
+                try {
+                    if (timeout > 0) {
+                        candidates.addAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                    } else {
+                        candidates.addAll(future.get());
+                    }
+                } catch (TimeoutException e) {
+                    Log.debug("Completion timed out");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
     }
 
     /**
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.impl.completer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+
+/**
+ * Completer which remembers the candidates returned by another completer,
+ * so that expensive completers are only invoked once per word.
+ *
+ * The candidates are cached using the words preceding the word being
+ * completed and the part of this word before the cursor.  As completers
+ * are expected to return all the possible candidates for the word, the
+ * candidates computed for a given prefix are reused when the prefix is
+ * extended.  Completers computing their candidates from the word being
+ * completed, such as the {@link FileNameCompleter}, should override
+ * {@link #isReusable(String, String)}.
+ *
+ * Entries expire after a given time, and the least recently used ones
+ * are evicted when the cache is full.
+ */
+public class CachingCompleter implements Completer
+{
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private final Completer completer;
+    private final long timeToLive;
+    private final Map<List<String>, CachedCandidates> cache;
+
+    public CachingCompleter(Completer completer) {
+        this(completer, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Construct a CachingCompleter
+     *
+     * @param completer the completer to cache
+     * @param timeToLive the time in milliseconds after which cached candidates are discarded
+     * @param maxSize the maximum number of cached candidate lists
+     */
+    public CachingCompleter(Completer completer, long timeToLive, int maxSize) {
+        Objects.requireNonNull(completer);
+        this.completer = completer;
+        this.timeToLive = timeToLive;
+        this.cache = new LinkedHashMap<List<String>, CachedCandidates>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, CachedCandidates> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Completer getCompleter() {
+        return completer;
+    }
+
+    @Override
+    public void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
+        Objects.requireNonNull(line);
+        Objects.requireNonNull(candidates);
+        String word = line.word();
+        String prefix = word.substring(0, Math.min(Math.max(line.wordCursor(), 0), word.length()));
+        List<String> key = new ArrayList<>(line.words().subList(0, Math.min(line.wordIndex(), line.words().size())));
+        key.add(prefix);
+        List<Candidate> cached = lookup(key, prefix);
+        if (cached == null) {
+            cached = new ArrayList<>();
+            completer.complete(reader, line, cached);
+            synchronized (cache) {
+                cache.put(key, new CachedCandidates(cached, System.currentTimeMillis() + timeToLive));
+            }
+        }
+        candidates.addAll(cached);
+    }
+
+    private List<Candidate> lookup(List<String> key, String prefix) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            // Look for the candidates computed for the longest prefix of the word
+            for (int i = prefix.length(); i >= 0; i--) {
+                String shorter = prefix.substring(0, i);
+                if (i < prefix.length() && !isReusable(shorter, prefix)) {
+                    continue;
+                }
+                key.set(key.size() - 1, shorter);
+                CachedCandidates entry = cache.get(key);
+                if (entry != null) {
+                    if (entry.expiry - now < 0) {
+                        cache.remove(key);
+                    } else {
+                        key.set(key.size() - 1, prefix);
+                        return entry.candidates;
+                    }
+                }
+            }
+            key.set(key.size() - 1, prefix);
+        }
+        return null;
+    }
+
+    /**
+     * Check if the candidates computed for a word starting with
+     * <code>cached</code> can be used to complete a word starting with
+     * <code>prefix</code>, which is an extension of it.
+     *
+     * @param cached the prefix the candidates have been computed for
+     * @param prefix the prefix of the word being completed
+     * @return <code>true</code> if the cached candidates can be reused
+     */
+    protected boolean isReusable(String cached, String prefix) {
+        return true;
+    }
+
+    /**
+     * Discard all the cached candidates.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static class CachedCandidates {
+        final List<Candidate> candidates;
+        final long expiry;
+
+        CachedCandidates(List<Candidate> candidates, long expiry) {
+            this.candidates = candidates;
+            this.expiry = expiry;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "completer=" + completer +
+            '}';
+    }
+
+}
@@ -33,7 +33,12 @@ public class DefaultHistory implements History {
     public static final int DEFAULT_HISTORY_SIZE = 500;
     public static final int DEFAULT_HISTORY_FILE_SIZE = 10000;
 
-    private final LinkedList<Entry> items = new LinkedList<>();
+    private final List<Entry> items = new ArrayList<>();
+
+    /**
+     * Index of the lines, built on the first search
+     */
+    private LineIndex lineIndex;
 
     private LineReader reader;
 
@@ -272,6 +277,7 @@ public class DefaultHistory implements History {
             internalClear();
             offset = allItems.get(0).index();
             items.addAll(allItems);
+            lineIndex = null;
             setHistoryFileData(path, new HistoryFileData(items.size(), items.size()));
         } else {
             setEntriesInFile(path, allItems.size());
@@ -295,6 +301,7 @@ public class DefaultHistory implements History {
         index = 0;
         historyFiles = new HashMap<>();
         items.clear();
+        lineIndex = null;
     }
 
     static void doTrimHistory(List<Entry> allItems, int max) {
@@ -362,7 +369,7 @@ public class DefaultHistory implements History {
             line = line.trim();
         }
         if (isSet(reader, LineReader.Option.HISTORY_IGNORE_DUPS)) {
-            if (!items.isEmpty() && line.equals(items.getLast().line())) {
+            if (!items.isEmpty() && line.equals(items.get(items.size() - 1).line())) {
                 return;
             }
         }
@@ -413,20 +420,52 @@ public class DefaultHistory implements History {
             }
         }
         items.add(entry);
+        if (lineIndex != null) {
+            lineIndex.add(entry);
+        }
         maybeResize();
     }
 
     private void maybeResize() {
-        while (size() > getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE)) {
-            items.removeFirst();
+        int excess = size() - getInt(reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE);
+        if (excess > 0) {
+            List<Entry> removed = items.subList(0, excess);
+            if (lineIndex != null) {
+                removed.forEach(lineIndex::remove);
+            }
+            removed.clear();
             for (HistoryFileData hfd: historyFiles.values()) {
-                hfd.decLastLoaded();
+                for (int i = 0; i < excess; i++) {
+                    hfd.decLastLoaded();
+                }
             }
-            offset++;
+            offset += excess;
         }
         index = size();
     }
 
+    @Override
+    public int searchBackwards(String term, int index, boolean startsWith) {
+        if (term.isEmpty() || !startsWith && term.length() < LineIndex.GRAM) {
+            return History.super.searchBackwards(term, index, startsWith);
+        }
+        if (lineIndex == null) {
+            lineIndex = new LineIndex();
+            items.forEach(lineIndex::add);
+        }
+        Postings postings = lineIndex.lookup(term, startsWith);
+        if (postings != null) {
+            for (int i = postings.lastBefore(index); i >= postings.start; i--) {
+                int idx = postings.indexes[i];
+                String line = get(idx);
+                if (startsWith ? line.startsWith(term) : line.contains(term)) {
+                    return idx;
+                }
+            }
+        }
+        return -1;
+    }
+
     public ListIterator<Entry> iterator(int index) {
         return items.listIterator(index - offset);
     }
@@ -614,6 +653,122 @@ public class DefaultHistory implements History {
         return sb.toString();
     }
 
+    /**
+     * Index of the history lines, mapping their prefixes and the sequences
+     * of {@link #GRAM} characters they contain to the indexes of the entries.
+     * Only the entries containing the least frequent sequence of a term need
+     * to be checked when searching for it.
+     */
+    private static class LineIndex {
+        static final int GRAM = 3;
+
+        final Map<String, Postings> prefixes = new HashMap<>();
+        final Map<String, Postings> grams = new HashMap<>();
+
+        void add(Entry entry) {
+            String line = entry.line();
+            for (int i = 1; i <= Math.min(GRAM, line.length()); i++) {
+                prefixes.computeIfAbsent(line.substring(0, i), k -> new Postings()).add(entry.index());
+            }
+            for (int i = 0; i + GRAM <= line.length(); i++) {
+                grams.computeIfAbsent(line.substring(i, i + GRAM), k -> new Postings()).add(entry.index());
+            }
+        }
+
+        void remove(Entry entry) {
+            String line = entry.line();
+            for (int i = 1; i <= Math.min(GRAM, line.length()); i++) {
+                remove(prefixes, line.substring(0, i), entry.index());
+            }
+            for (int i = 0; i + GRAM <= line.length(); i++) {
+                remove(grams, line.substring(i, i + GRAM), entry.index());
+            }
+        }
+
+        private static void remove(Map<String, Postings> map, String key, int index) {
+            Postings postings = map.get(key);
+            if (postings != null && postings.removeFirst(index) && postings.isEmpty()) {
+                map.remove(key);
+            }
+        }
+
+        Postings lookup(String term, boolean startsWith) {
+            if (startsWith) {
+                return prefixes.get(term.substring(0, Math.min(GRAM, term.length())));
+            }
+            Postings best = null;
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                Postings postings = grams.get(term.substring(i, i + GRAM));
+                if (postings == null) {
+                    return null;
+                }
+                if (best == null || postings.size() < best.size()) {
+                    best = postings;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Sorted indexes of the entries matching a key of the {@link LineIndex}.
+     * Entries are added at the end and removed from the start.
+     */
+    private static class Postings {
+        int[] indexes = new int[2];
+        int start;
+        int end;
+
+        void add(int index) {
+            if (end > start && indexes[end - 1] == index) {
+                return;
+            }
+            if (end == indexes.length) {
+                int size = end - start;
+                int[] newIndexes = size * 2 > indexes.length ? new int[size * 2] : indexes;
+                System.arraycopy(indexes, start, newIndexes, 0, size);
+                indexes = newIndexes;
+                start = 0;
+                end = size;
+            }
+            indexes[end++] = index;
+        }
+
+        boolean removeFirst(int index) {
+            if (end > start && indexes[start] == index) {
+                start++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return end == start;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        /**
+         * Position of the last index lower than the given one,
+         * or <code>start - 1</code> if there is none.
+         */
+        int lastBefore(int index) {
+            int lo = start;
+            int hi = end;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indexes[mid] < index) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+    }
+
     private class HistoryFileData {
         private int lastLoaded = 0;
         private int entriesInFile = 0;
@@ -74,4 +74,32 @@ public class BindingReaderTest {
         assertEquals("b", reader.getLastBinding());
         assertNull(reader.readBinding(keyMap));
     }
+
+    @Test
+    public void testBindingReaderSequences() {
+        in.setIn(new ByteArrayInputStream("\033[Ax\033[Bz\033[Cy".getBytes(StandardCharsets.UTF_8)));
+        BindingReader reader = new BindingReader(terminal.reader());
+        KeyMap<Binding> keyMap = new KeyMap<>();
+        keyMap.setAmbiguousTimeout(0);
+        keyMap.setNomatch(new Reference("nomatch"));
+        keyMap.bind(new Reference("up"), "\033[A");
+        keyMap.bind(new Reference("down"), "\033[B");
+        keyMap.bind(new Reference("esc"), "\033");
+        keyMap.bind(new Reference("x"), "x");
+        KeyMap<Binding> local = new KeyMap<>();
+        local.bind(new Reference("local-down"), "\033[B");
+        assertEquals(new Reference("up"), reader.readBinding(keyMap, local));
+        assertEquals("\033[A", reader.getLastBinding());
+        assertEquals(new Reference("x"), reader.readBinding(keyMap, local));
+        assertEquals(new Reference("local-down"), reader.readBinding(keyMap, local));
+        assertEquals("\033[B", reader.getLastBinding());
+        assertEquals(new Reference("nomatch"), reader.readBinding(keyMap, local));
+        assertEquals("z", reader.getLastBinding());
+        assertEquals(new Reference("nomatch"), reader.readBinding(keyMap, local));
+        assertEquals("\033", reader.getLastBinding());
+        assertEquals(new Reference("nomatch"), reader.readBinding(keyMap, local));
+        assertEquals("[", reader.getLastBinding());
+        assertEquals(new Reference("nomatch"), reader.readBinding(keyMap, local));
+        assertEquals("C", reader.getLastBinding());
+    }
 }
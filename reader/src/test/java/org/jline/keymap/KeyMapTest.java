@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -160,4 +161,27 @@ public class KeyMapTest {
         assertEquals(Arrays.asList(translate("a^A"), translate("a^B"), translate("a^C"), translate("a^D")), range);
     }
 
+    @Test
+    public void testTemplate() {
+        KeyMap<String> template = new KeyMap<>();
+        template.bind("a", "ab");
+        template.bind("b", "x");
+        AtomicInteger count = new AtomicInteger();
+        KeyMap<String> map1 = new KeyMap<>(() -> { count.incrementAndGet(); return template; });
+        KeyMap<String> map2 = new KeyMap<>(() -> { count.incrementAndGet(); return template; });
+        assertEquals(0, count.get());
+
+        assertEquals("a", map1.getBound("ab"));
+        assertEquals(1, count.get());
+        map1.bind("c", "ab");
+        map1.unbind("x");
+        assertEquals("c", map1.getBound("ab"));
+        assertNull(map1.getBound("x"));
+
+        assertEquals("a", template.getBound("ab"));
+        assertEquals("b", template.getBound("x"));
+        assertEquals(template.getBoundKeys(), map2.getBoundKeys());
+        assertEquals(2, count.get());
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.completer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.impl.DefaultParser;
+import org.jline.reader.impl.completer.AggregateCompleter;
+import org.jline.reader.impl.completer.StringsCompleter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link AggregateCompleter}.
+ */
+public class AggregateCompleterTest
+{
+    @Test
+    public void testConcurrent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            AggregateCompleter completer = new AggregateCompleter(
+                    (reader, line, candidates) -> {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        candidates.add(new Candidate("slow"));
+                    },
+                    new StringsCompleter("foo", "bar"),
+                    new StringsCompleter("baz"))
+                    .executor(executor)
+                    .timeout(100);
+
+            List<Candidate> candidates = new ArrayList<>();
+            completer.complete(null, new DefaultParser().parse("", 0), candidates);
+            assertEquals(3, candidates.size());
+            assertEquals("foo", candidates.get(0).value());
+            assertEquals("bar", candidates.get(1).value());
+            assertEquals("baz", candidates.get(2).value());
+
+            latch.countDown();
+            candidates.clear();
+            completer.complete(null, new DefaultParser().parse("", 0), candidates);
+            assertEquals(4, candidates.size());
+            assertEquals("slow", candidates.get(0).value());
+            assertEquals("baz", candidates.get(3).value());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
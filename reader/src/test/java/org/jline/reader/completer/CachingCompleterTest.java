@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.reader.completer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.impl.ReaderTestSupport;
+import org.jline.reader.impl.completer.CachingCompleter;
+import org.jline.reader.impl.completer.StringsCompleter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link CachingCompleter}.
+ */
+public class CachingCompleterTest
+    extends ReaderTestSupport
+{
+    @Test
+    public void testCache() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StringsCompleter strings = new StringsCompleter("foo", "bar", "baz");
+        CachingCompleter completer = new CachingCompleter((reader, line, candidates) -> {
+            calls.incrementAndGet();
+            strings.complete(reader, line, candidates);
+        });
+        reader.setCompleter(completer);
+
+        assertBuffer("ba", new TestBuffer("b").tab());
+        assertEquals(1, calls.get());
+        assertBuffer("baz ", new TestBuffer("baz").tab());
+        assertEquals(1, calls.get());
+        assertBuffer("foo baz ", new TestBuffer("foo baz").tab());
+        assertEquals(2, calls.get());
+
+        completer.clear();
+        assertBuffer("foo ", new TestBuffer("f").tab());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        reader.setCompleter(new CachingCompleter((reader, line, candidates) -> {
+            calls.incrementAndGet();
+            candidates.add(new Candidate("foo"));
+        }, 0, 16));
+
+        assertBuffer("foo ", new TestBuffer("f").tab());
+        Thread.sleep(5);
+        assertBuffer("foo ", new TestBuffer("f").tab());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        reader.setCompleter(new CachingCompleter((reader, line, candidates) -> {
+            calls.incrementAndGet();
+            candidates.add(new Candidate("foo"));
+        }, CachingCompleter.DEFAULT_TIME_TO_LIVE, 1));
+
+        assertBuffer("foo ", new TestBuffer("f").tab());
+        assertBuffer("a foo ", new TestBuffer("a f").tab());
+        assertBuffer("foo ", new TestBuffer("f").tab());
+        assertEquals(3, calls.get());
+    }
+}
@@ -12,6 +12,7 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class BufferTest {
@@ -45,4 +46,83 @@ public class BufferTest {
         assertEquals(22, buffer.cursor());
         assertFalse(buffer.down());
     }
+
+    @Test
+    public void testChange() {
+        BufferImpl buffer = new BufferImpl();
+        buffer.write("abcdef");
+        buffer.cursor(3);
+        buffer.beginChange();
+        buffer.move(-1);
+        assertNull(buffer.endChange());
+
+        buffer.beginChange();
+        buffer.write("x");
+        buffer.write("yz");
+        buffer.backspace(3);
+        buffer.delete(1);
+        buffer.currChar('D');
+        BufferImpl.Change change = buffer.endChange();
+        assertEquals("abDef", buffer.toString());
+
+        change.revert(buffer);
+        assertEquals("abcdef", buffer.toString());
+        assertEquals(2, buffer.cursor());
+        change.apply(buffer);
+        assertEquals("abDef", buffer.toString());
+
+        BufferImpl other = new BufferImpl();
+        other.write("abXYef");
+        buffer.beginChange();
+        buffer.copyFrom(other);
+        change = buffer.endChange();
+        // One change with one edit, removing one char and inserting two
+        assertEquals(16 + 8 + 3, change.size());
+        change.revert(buffer);
+        assertEquals("abDef", buffer.toString());
+    }
+
+    @Test
+    public void testMergeChanges() {
+        BufferImpl buffer = new BufferImpl();
+        buffer.write("ab");
+        buffer.beginChange();
+        buffer.write("c");
+        BufferImpl.Change change = buffer.endChange();
+        buffer.beginChange();
+        buffer.write("d");
+        assertTrue(change.merge(buffer.endChange()));
+        assertEquals(16 + 8 + 2, change.size());
+
+        buffer.cursor(0);
+        buffer.beginChange();
+        buffer.write("x");
+        assertFalse(change.merge(buffer.endChange()));
+        buffer.cursor(0);
+        buffer.delete(1);
+
+        change.revert(buffer);
+        assertEquals("ab", buffer.toString());
+        assertEquals(2, buffer.cursor());
+        change.apply(buffer);
+        assertEquals("abcd", buffer.toString());
+        assertEquals(4, buffer.cursor());
+    }
+
+    @Test
+    public void testUndoTreeLimit() {
+        StringBuilder sb = new StringBuilder();
+        UndoTree<String> undo = new UndoTree<>(s -> sb.append(s), s -> sb.setLength(sb.length() - s.length()));
+        undo.setLimit(5, String::length);
+        for (String s : new String[] { "ab", "cd", "ef" }) {
+            sb.append(s);
+            undo.newState(s);
+        }
+        undo.undo();
+        undo.undo();
+        assertEquals("ab", sb.toString());
+        assertFalse(undo.canUndo());
+        undo.redo();
+        assertEquals("abcd", sb.toString());
+    }
 }
@@ -113,6 +113,27 @@ public class CompletionTest extends ReaderTestSupport {
 
     }
 
+    @Test
+    public void testMenuScroll() throws IOException {
+        String[] strings = new String[500];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = String.format("c%03d", i);
+        }
+        reader.setCompleter(new StringsCompleter(strings));
+        reader.setOpt(Option.AUTO_LIST);
+        reader.setOpt(Option.AUTO_MENU);
+        reader.unsetOpt(Option.LIST_AMBIGUOUS);
+        terminal.setSize(new Size(40, 10));
+
+        StringBuilder sb = new StringBuilder("c\t\t\t");
+        for (int i = 0; i < 320; i++) {
+            sb.append('\t');
+        }
+        assertBuffer("c320", new TestBuffer(sb.toString()));
+        assertTrue(reader.menu);
+        assertBuffer("c499", new TestBuffer("c\t\t\t\033[Z"));
+    }
+
     @Test
     public void testCompletePrefix() throws Exception {
         Completer nil = new NullCompleter();
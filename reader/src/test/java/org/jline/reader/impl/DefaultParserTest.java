@@ -8,12 +8,19 @@
  */
 package org.jline.reader.impl;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.jline.reader.CompletingParsedLine;
+import org.jline.reader.EOFError;
 import org.jline.reader.ParsedLine;
+import org.jline.reader.Parser.ParseContext;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public class DefaultParserTest {
 
@@ -47,4 +54,56 @@ public class DefaultParserTest {
         assertEquals(14, line.rawWordLength());
     }
 
+    @Test
+    public void testIncremental() {
+        DefaultParser incremental = new DefaultParser();
+        incremental.setEofOnUnclosedBracket(DefaultParser.Bracket.CURLY);
+        incremental.setEofOnUnclosedQuote(true);
+        String chars = "ab \n'\"\\{}";
+        Random random = new Random(1);
+        StringBuilder buffer = new StringBuilder();
+        for (int n = 0; n < 2000; n++) {
+            int pos = random.nextInt(buffer.length() + 1);
+            if (buffer.length() > 0 && random.nextInt(3) == 0) {
+                buffer.deleteCharAt(Math.min(pos, buffer.length() - 1));
+            } else {
+                buffer.insert(pos, chars.charAt(random.nextInt(chars.length())));
+            }
+            String line = buffer.toString();
+            int cursor = random.nextInt(line.length() + 1);
+            for (ParseContext context : new ParseContext[] { ParseContext.COMPLETE, ParseContext.ACCEPT_LINE }) {
+                DefaultParser parser = new DefaultParser();
+                parser.setEofOnUnclosedBracket(DefaultParser.Bracket.CURLY);
+                parser.setEofOnUnclosedQuote(true);
+                assertEquals(parse(parser, line, cursor, context), parse(incremental, line, cursor, context));
+                assertEquals(parse(parser, line, line.length(), context), parse(incremental, line, line.length(), context));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalResultsNotShared() {
+        DefaultParser parser = new DefaultParser();
+        ParsedLine first = parser.parse("a b\nc d", 7, ParseContext.ACCEPT_LINE);
+        assertSame(first, parser.parse("a b\nc d", 7, ParseContext.ACCEPT_LINE));
+        ParsedLine second = parser.parse("a b\nc de f", 10, ParseContext.ACCEPT_LINE);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), first.words());
+        assertEquals(Arrays.asList("a", "b", "c", "de", "f"), second.words());
+        try {
+            first.words().add("e");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    private String parse(DefaultParser parser, String line, int cursor, ParseContext context) {
+        try {
+            CompletingParsedLine pl = (CompletingParsedLine) parser.parse(line, cursor, context);
+            return pl.words() + " " + pl.wordIndex() + " " + pl.wordCursor()
+                    + " " + pl.rawWordCursor() + " " + pl.rawWordLength();
+        } catch (EOFError e) {
+            return e.getMessage() + " " + e.getMissing();
+        }
+    }
 }
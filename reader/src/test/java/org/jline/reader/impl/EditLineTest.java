@@ -19,6 +19,8 @@ import static org.jline.reader.LineReader.BACKWARD_WORD;
 import static org.jline.reader.LineReader.END_OF_LINE;
 import static org.jline.reader.LineReader.FORWARD_WORD;
 import static org.jline.reader.LineReader.KILL_WORD;
+import static org.jline.reader.LineReader.REDO;
+import static org.jline.reader.LineReader.UNDO;
 
 /**
  * Tests various features of editing lines.
@@ -42,6 +44,24 @@ public class EditLineTest
         assertBuffer("config:property-set --pid org.ops4j.pax.url.mvn odsa crash", b);
     }
 
+    @Test
+    public void testUndoRedo() throws Exception {
+        TestBuffer b = new TestBuffer("This is a test")
+                .op(BACKWARD_KILL_WORD)
+                .op(UNDO);
+        assertBuffer("This is a test", b);
+        assertBuffer("This is a ", b = b.op(REDO));
+        assertBuffer("This is a xy", b = b.append("xy"));
+        // A typed word is undone in one step
+        assertBuffer("This is a ", b = b.op(UNDO));
+        assertBuffer("This is a test", b = b.op(UNDO));
+        assertBuffer("", b = b.op(UNDO));
+        assertBuffer("This is a test", b = b.op(REDO));
+        // Chars typed after moving the cursor are undone separately
+        assertBuffer("This is a an test", b = b.op(BACKWARD_WORD).append("an "));
+        assertBuffer("This is a test", b = b.op(UNDO));
+    }
+
     @Test
     public void testDeletePreviousWord() throws Exception {
         TestBuffer b = new TestBuffer("This is a test");
@@ -28,7 +28,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.jline.terminal.impl.AbstractWindowsTerminal.TYPE_WINDOWS_CONEMU;
@@ -141,5 +143,68 @@ public class LineReaderTest {
         assertTrue(sw.toString().contains("\u001b[9999E"));
     }
 
+    // Reading the paste one binding at a time took several seconds
+    @Test(timeout = 5000)
+    public void testBracketedPasteLarge() throws Exception {
+        StringBuilder paste = new StringBuilder();
+        while (paste.length() < 1024 * 1024) {
+            paste.append("insert into t values (").append(paste.length()).append(", 'foo');\r");
+        }
+        String input = LineReaderImpl.BRACKETED_PASTE_BEGIN + paste
+                + LineReaderImpl.BRACKETED_PASTE_END + "\r";
+        Terminal terminal = new DumbTerminal("terminal", "ansi",
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8);
+        LineReader reader = new LineReaderImpl(terminal);
+        // do not parse each line to display the secondary prompts
+        reader.setVariable(LineReader.SECONDARY_PROMPT_PATTERN, "%P > ");
+        String line = reader.readLine();
+        assertEquals(paste.toString().replace('\r', '\n'), line);
+    }
+
+    @Test
+    public void testBatchMode() throws Exception {
+        String input = "echo foo\n!!\r\necho 'a\nb'\n\nlast";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Terminal terminal = new DumbTerminal(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+        LineReader reader = LineReaderBuilder.builder()
+                .terminal(terminal)
+                .parser(new DefaultParser().eofOnUnclosedQuote(true))
+                .option(LineReader.Option.BATCH_MODE, true)
+                .build();
+        assertEquals("echo foo", reader.readLine("> "));
+        assertEquals("echo foo", reader.readLine("> "));
+        assertEquals("echo 'a\nb'", reader.readLine("> "));
+        assertEquals("", reader.readLine("> "));
+        assertEquals("last", reader.readLine("> "));
+        try {
+            reader.readLine("> ");
+            fail("Expected EndOfFileException");
+        } catch (EndOfFileException e) {
+            // expected
+        }
+        assertEquals(3, reader.getHistory().size());
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testBatchModeUnterminated() throws Exception {
+        String input = "echo 'a\nb";
+        Terminal terminal = new DumbTerminal(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayOutputStream());
+        LineReader reader = LineReaderBuilder.builder()
+                .terminal(terminal)
+                .parser(new DefaultParser().eofOnUnclosedQuote(true))
+                .option(LineReader.Option.BATCH_MODE, true)
+                .build();
+        assertEquals("echo 'a\nb", reader.readLine("> "));
+        assertEquals(Arrays.asList("echo", "a\nb"), reader.getParsedLine().words());
+        try {
+            reader.readLine("> ");
+            fail("Expected EndOfFileException");
+        } catch (EndOfFileException e) {
+            // expected
+        }
+    }
 
 }
@@ -42,6 +42,8 @@ import static org.jline.reader.LineReader.FORWARD_WORD;
 import static org.jline.reader.LineReader.KILL_WHOLE_LINE;
 import static org.jline.reader.LineReader.KILL_WORD;
 import static org.jline.reader.LineReader.UP_HISTORY;
+import static org.jline.reader.LineReader.REDO;
+import static org.jline.reader.LineReader.UNDO;
 import static org.jline.reader.LineReader.YANK;
 import static org.jline.reader.LineReader.YANK_POP;
 import static org.junit.Assert.assertEquals;
@@ -175,6 +177,8 @@ public abstract class ReaderTestSupport
             case BACKWARD_DELETE_CHAR: return "\010";
             case YANK:                 return "\u0019";
             case YANK_POP:             return new String(new char[]{27, 121});
+            case UNDO:                 return "\u001F";
+            case REDO:                 return "\u0018\u0012";
             default:
               throw new IllegalArgumentException(key);
         }
@@ -22,6 +22,8 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -176,4 +178,35 @@ public class HistoryTest extends ReaderTestSupport
             assertTrue(e.getMessage().startsWith("Bad history file syntax!"));
         }
     }
+
+    @Test
+    public void testSearchBackwards() {
+        reader.setVariable(LineReader.HISTORY_SIZE, 50);
+        reader.setOpt(LineReader.Option.HISTORY_IGNORE_DUPS);
+        Random random = new Random(0);
+        String chars = "abc ";
+        for (int n = 0; n < 200; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = random.nextInt(8); i > 0; i--) {
+                sb.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            history.add(sb.toString());
+            for (String term : new String[] { "", "a", "ab", "abc", "ab c", "cab", "ca" }) {
+                int index = history.first() + random.nextInt(history.size() + 1);
+                assertEquals(search(term, index, true), history.searchBackwards(term, index, true));
+                assertEquals(search(term, index, false), history.searchBackwards(term, index, false));
+            }
+        }
+    }
+
+    private int search(String term, int index, boolean startsWith) {
+        ListIterator<History.Entry> it = history.iterator(index);
+        while (it.hasPrevious()) {
+            History.Entry e = it.previous();
+            if (startsWith ? e.line().startsWith(term) : e.line().contains(term)) {
+                return e.index();
+            }
+        }
+        return -1;
+    }
 }
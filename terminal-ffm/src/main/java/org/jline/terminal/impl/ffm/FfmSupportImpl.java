@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl.ffm;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
+import org.jline.terminal.spi.FfmSupport;
+import org.jline.terminal.spi.Pty;
+
+import java.io.IOException;
+
+public class FfmSupportImpl implements FfmSupport {
+    @Override
+    public Pty current() throws IOException {
+        return FfmNativePty.current();
+    }
+
+    @Override
+    public Pty open(Attributes attributes, Size size) throws IOException {
+        return FfmNativePty.open(attributes, size);
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl.ffm.linux;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.GroupLayout;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemoryLayout.PathElement;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Attributes.ControlChar;
+import org.jline.terminal.Attributes.ControlFlag;
+import org.jline.terminal.Attributes.InputFlag;
+import org.jline.terminal.Attributes.LocalFlag;
+import org.jline.terminal.Attributes.OutputFlag;
+import org.jline.terminal.Size;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+/**
+ * Downcalls to the Linux C library.
+ * The method handles are linked once when the class is initialized,
+ * errno is captured by the linker and reported as an {@link IOException}.
+ */
+public final class CLibrary {
+
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final GroupLayout CAPTURED_STATE = Linker.Option.captureStateLayout();
+    private static final long ERRNO_OFFSET = CAPTURED_STATE.byteOffset(PathElement.groupElement("errno"));
+
+    private static final MethodHandle TCGETATTR = downcall("tcgetattr",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle TCSETATTR = downcall("tcsetattr",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+    private static final MethodHandle IOCTL = downcall("ioctl",
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, ADDRESS),
+            Linker.Option.firstVariadicArg(2));
+    private static final MethodHandle TTYNAME_R = LINKER.downcallHandle(
+            LINKER.defaultLookup().find("ttyname_r").orElseThrow(),
+            FunctionDescriptor.of(JAVA_INT, JAVA_INT, ADDRESS, JAVA_LONG));
+
+    private CLibrary() {
+    }
+
+    public static void tcgetattr(int fd, termios t) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = arena.allocate(CAPTURED_STATE);
+            MemorySegment seg = arena.allocate(termios.LAYOUT);
+            int res = (int) TCGETATTR.invokeExact(state, fd, seg);
+            check(res, state, "tcgetattr");
+            t.read(seg);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Error calling tcgetattr", e);
+        }
+    }
+
+    public static void tcsetattr(int fd, int cmd, termios t) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = arena.allocate(CAPTURED_STATE);
+            MemorySegment seg = arena.allocate(termios.LAYOUT);
+            t.write(seg);
+            int res = (int) TCSETATTR.invokeExact(state, fd, cmd, seg);
+            check(res, state, "tcsetattr");
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Error calling tcsetattr", e);
+        }
+    }
+
+    public static void ioctl(int fd, long cmd, winsize data) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = arena.allocate(CAPTURED_STATE);
+            MemorySegment seg = arena.allocate(winsize.LAYOUT);
+            data.write(seg);
+            int res = (int) IOCTL.invokeExact(state, fd, cmd, seg);
+            check(res, state, "ioctl");
+            data.read(seg);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Error calling ioctl", e);
+        }
+    }
+
+    public static String ttyname(int fd) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment buf = arena.allocate(64);
+            int res = (int) TTYNAME_R.invokeExact(fd, buf, buf.byteSize());
+            if (res != 0) {
+                // ttyname_r returns the error number instead of setting errno
+                throw new IOException("Not a tty (errno=" + res + ")");
+            }
+            return cstring(buf);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Error calling ttyname_r", e);
+        }
+    }
+
+    /**
+     * Calls {@code openpty} and returns the master and slave file descriptors.
+     * The name of the slave device is stored in the first element of {@code name}.
+     */
+    public static int[] openpty(termios t, winsize s, String[] name) throws IOException {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment state = arena.allocate(CAPTURED_STATE);
+            MemorySegment master = arena.allocate(JAVA_INT);
+            MemorySegment slave = arena.allocate(JAVA_INT);
+            MemorySegment buf = arena.allocate(64);
+            MemorySegment tseg = MemorySegment.NULL;
+            if (t != null) {
+                tseg = arena.allocate(termios.LAYOUT);
+                t.write(tseg);
+            }
+            MemorySegment sseg = MemorySegment.NULL;
+            if (s != null) {
+                sseg = arena.allocate(winsize.LAYOUT);
+                s.write(sseg);
+            }
+            int res = (int) Util.OPENPTY.invokeExact(state, master, slave, buf, tseg, sseg);
+            check(res, state, "openpty");
+            name[0] = cstring(buf);
+            return new int[] { master.get(JAVA_INT, 0), slave.get(JAVA_INT, 0) };
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IOException("Error calling openpty", e);
+        }
+    }
+
+    private static MethodHandle downcall(String name, FunctionDescriptor desc, Linker.Option... options) {
+        return downcall(LINKER.defaultLookup(), name, desc, options);
+    }
+
+    private static MethodHandle downcall(SymbolLookup lookup, String name, FunctionDescriptor desc, Linker.Option... options) {
+        Linker.Option[] opts = new Linker.Option[options.length + 1];
+        opts[0] = Linker.Option.captureCallState("errno");
+        System.arraycopy(options, 0, opts, 1, options.length);
+        MemorySegment symbol = lookup.find(name)
+                .orElseThrow(() -> new UnsatisfiedLinkError("Unable to find symbol " + name));
+        return LINKER.downcallHandle(symbol, desc, opts);
+    }
+
+    private static void check(int res, MemorySegment state, String function) throws IOException {
+        if (res == -1) {
+            int errno = state.get(JAVA_INT, ERRNO_OFFSET);
+            throw new IOException(function + " failed (errno=" + errno + ")");
+        }
+    }
+
+    private static String cstring(MemorySegment buf) {
+        int len = 0;
+        while (len < buf.byteSize() && buf.get(JAVA_BYTE, len) != 0) {
+            len++;
+        }
+        byte[] bytes = new byte[len];
+        MemorySegment.copy(buf, JAVA_BYTE, 0, bytes, 0, len);
+        return new String(bytes);
+    }
+
+    /**
+     * {@code openpty} lives in libutil on glibc versions older than 2.34,
+     * so it is only looked up when a new pty is actually requested.
+     */
+    private static final class Util {
+        static final MethodHandle OPENPTY = downcall(lookup(), "openpty",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, ADDRESS, ADDRESS));
+
+        private static SymbolLookup lookup() {
+            SymbolLookup libc = LINKER.defaultLookup();
+            if (libc.find("openpty").isPresent()) {
+                return libc;
+            }
+            return SymbolLookup.libraryLookup("libutil.so.1", Arena.global());
+        }
+    }
+
+    public static class winsize {
+
+        static final GroupLayout LAYOUT = MemoryLayout.structLayout(
+                JAVA_SHORT.withName("ws_row"),
+                JAVA_SHORT.withName("ws_col"),
+                JAVA_SHORT.withName("ws_xpixel"),
+                JAVA_SHORT.withName("ws_ypixel"));
+
+        public short ws_row;
+        public short ws_col;
+        public short ws_xpixel;
+        public short ws_ypixel;
+
+        public winsize() {
+        }
+
+        public winsize(Size ws) {
+            ws_row = (short) ws.getRows();
+            ws_col = (short) ws.getColumns();
+        }
+
+        public Size toSize() {
+            return new Size(ws_col, ws_row);
+        }
+
+        void read(MemorySegment seg) {
+            ws_row = seg.get(JAVA_SHORT, 0);
+            ws_col = seg.get(JAVA_SHORT, 2);
+            ws_xpixel = seg.get(JAVA_SHORT, 4);
+            ws_ypixel = seg.get(JAVA_SHORT, 6);
+        }
+
+        void write(MemorySegment seg) {
+            seg.set(JAVA_SHORT, 0, ws_row);
+            seg.set(JAVA_SHORT, 2, ws_col);
+            seg.set(JAVA_SHORT, 4, ws_xpixel);
+            seg.set(JAVA_SHORT, 6, ws_ypixel);
+        }
+
+    }
+
+    public static class termios {
+
+        static final GroupLayout LAYOUT = MemoryLayout.structLayout(
+                JAVA_INT.withName("c_iflag"),
+                JAVA_INT.withName("c_oflag"),
+                JAVA_INT.withName("c_cflag"),
+                JAVA_INT.withName("c_lflag"),
+                JAVA_BYTE.withName("c_line"),
+                MemoryLayout.sequenceLayout(32, JAVA_BYTE).withName("c_cc"),
+                MemoryLayout.paddingLayout(3),
+                JAVA_INT.withName("c_ispeed"),
+                JAVA_INT.withName("c_ospeed"));
+
+        private static final long C_IFLAG = LAYOUT.byteOffset(PathElement.groupElement("c_iflag"));
+        private static final long C_OFLAG = LAYOUT.byteOffset(PathElement.groupElement("c_oflag"));
+        private static final long C_CFLAG = LAYOUT.byteOffset(PathElement.groupElement("c_cflag"));
+        private static final long C_LFLAG = LAYOUT.byteOffset(PathElement.groupElement("c_lflag"));
+        private static final long C_LINE = LAYOUT.byteOffset(PathElement.groupElement("c_line"));
+        private static final long C_CC = LAYOUT.byteOffset(PathElement.groupElement("c_cc"));
+        private static final long C_ISPEED = LAYOUT.byteOffset(PathElement.groupElement("c_ispeed"));
+        private static final long C_OSPEED = LAYOUT.byteOffset(PathElement.groupElement("c_ospeed"));
+
+        public int c_iflag;
+        public int c_oflag;
+        public int c_cflag;
+        public int c_lflag;
+        public byte c_line;
+        public byte[] c_cc = new byte[32];
+        public int c_ispeed;
+        public int c_ospeed;
+
+        public termios() {
+        }
+
+        public termios(Attributes t) {
+            // Input flags
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IGNBRK),           IGNBRK,     c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.BRKINT),           BRKINT,     c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IGNPAR),           IGNPAR,     c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.PARMRK),           PARMRK,     c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.INPCK),            INPCK,      c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.ISTRIP),           ISTRIP,     c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.INLCR),            INLCR,      c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IGNCR),            IGNCR,      c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.ICRNL),            ICRNL,      c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IXON),             IXON,       c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IXOFF),            IXOFF,      c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IXANY),            IXANY,      c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IMAXBEL),          IMAXBEL,    c_iflag);
+            c_iflag = setFlag(t.getInputFlag(InputFlag.IUTF8),            IUTF8,      c_iflag);
+            // Output flags
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.OPOST),          OPOST,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.ONLCR),          ONLCR,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.OCRNL),          OCRNL,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.ONOCR),          ONOCR,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.ONLRET),         ONLRET,     c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.OFILL),          OFILL,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.NLDLY),          NLDLY,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.TABDLY),         TABDLY,     c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.CRDLY),          CRDLY,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.FFDLY),          FFDLY,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.BSDLY),          BSDLY,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.VTDLY),          VTDLY,      c_oflag);
+            c_oflag = setFlag(t.getOutputFlag(OutputFlag.OFDEL),          OFDEL,      c_oflag);
+            // Control flags
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CS5),          CS5,        c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CS6),          CS6,        c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CS7),          CS7,        c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CS8),          CS8,        c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CSTOPB),       CSTOPB,     c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CREAD),        CREAD,      c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.PARENB),       PARENB,     c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.PARODD),       PARODD,     c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.HUPCL),        HUPCL,      c_cflag);
+            c_cflag = setFlag(t.getControlFlag(ControlFlag.CLOCAL),       CLOCAL,     c_cflag);
+            // Local flags
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHOKE),           ECHOKE,     c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHOE),            ECHOE,      c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHOK),            ECHOK,      c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHO),             ECHO,       c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHONL),           ECHONL,     c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHOPRT),          ECHOPRT,    c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ECHOCTL),          ECHOCTL,    c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ISIG),             ISIG,       c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.ICANON),           ICANON,     c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.EXTPROC),          EXTPROC,    c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.TOSTOP),           TOSTOP,     c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.FLUSHO),           FLUSHO,     c_lflag);
+            c_lflag = setFlag(t.getLocalFlag(LocalFlag.NOFLSH),           NOFLSH,     c_lflag);
+            // Control chars
+            c_cc[VEOF]      = (byte) t.getControlChar(ControlChar.VEOF);
+            c_cc[VEOL]      = (byte) t.getControlChar(ControlChar.VEOL);
+            c_cc[VEOL2]     = (byte) t.getControlChar(ControlChar.VEOL2);
+            c_cc[VERASE]    = (byte) t.getControlChar(ControlChar.VERASE);
+            c_cc[VWERASE]   = (byte) t.getControlChar(ControlChar.VWERASE);
+            c_cc[VKILL]     = (byte) t.getControlChar(ControlChar.VKILL);
+            c_cc[VREPRINT]  = (byte) t.getControlChar(ControlChar.VREPRINT);
+            c_cc[VINTR]     = (byte) t.getControlChar(ControlChar.VINTR);
+            c_cc[VQUIT]     = (byte) t.getControlChar(ControlChar.VQUIT);
+            c_cc[VSUSP]     = (byte) t.getControlChar(ControlChar.VSUSP);
+            c_cc[VSTART]    = (byte) t.getControlChar(ControlChar.VSTART);
+            c_cc[VSTOP]     = (byte) t.getControlChar(ControlChar.VSTOP);
+            c_cc[VLNEXT]    = (byte) t.getControlChar(ControlChar.VLNEXT);
+            c_cc[VDISCARD]  = (byte) t.getControlChar(ControlChar.VDISCARD);
+            c_cc[VMIN]      = (byte) t.getControlChar(ControlChar.VMIN);
+            c_cc[VTIME]     = (byte) t.getControlChar(ControlChar.VTIME);
+        }
+
+        private int setFlag(boolean flag, int value, int org) {
+            return flag ? (org | value) : org;
+        }
+
+        public Attributes toAttributes() {
+            Attributes attr = new Attributes();
+            // Input flags
+            EnumSet<InputFlag> iflag = attr.getInputFlags();
+            addFlag(c_iflag, iflag, InputFlag.IGNBRK, IGNBRK);
+            addFlag(c_iflag, iflag, InputFlag.BRKINT, BRKINT);
+            addFlag(c_iflag, iflag, InputFlag.IGNPAR, IGNPAR);
+            addFlag(c_iflag, iflag, InputFlag.PARMRK, PARMRK);
+            addFlag(c_iflag, iflag, InputFlag.INPCK, INPCK);
+            addFlag(c_iflag, iflag, InputFlag.ISTRIP, ISTRIP);
+            addFlag(c_iflag, iflag, InputFlag.INLCR, INLCR);
+            addFlag(c_iflag, iflag, InputFlag.IGNCR, IGNCR);
+            addFlag(c_iflag, iflag, InputFlag.ICRNL, ICRNL);
+            addFlag(c_iflag, iflag, InputFlag.IXON, IXON);
+            addFlag(c_iflag, iflag, InputFlag.IXOFF, IXOFF);
+            addFlag(c_iflag, iflag, InputFlag.IXANY, IXANY);
+            addFlag(c_iflag, iflag, InputFlag.IMAXBEL, IMAXBEL);
+            addFlag(c_iflag, iflag, InputFlag.IUTF8, IUTF8);
+            // Output flags
+            EnumSet<OutputFlag> oflag = attr.getOutputFlags();
+            addFlag(c_oflag, oflag, OutputFlag.OPOST, OPOST);
+            addFlag(c_oflag, oflag, OutputFlag.ONLCR, ONLCR);
+            addFlag(c_oflag, oflag, OutputFlag.OCRNL, OCRNL);
+            addFlag(c_oflag, oflag, OutputFlag.ONOCR, ONOCR);
+            addFlag(c_oflag, oflag, OutputFlag.ONLRET, ONLRET);
+            addFlag(c_oflag, oflag, OutputFlag.OFILL, OFILL);
+            addFlag(c_oflag, oflag, OutputFlag.NLDLY, NLDLY);
+            addFlag(c_oflag, oflag, OutputFlag.TABDLY, TABDLY);
+            addFlag(c_oflag, oflag, OutputFlag.CRDLY, CRDLY);
+            addFlag(c_oflag, oflag, OutputFlag.FFDLY, FFDLY);
+            addFlag(c_oflag, oflag, OutputFlag.BSDLY, BSDLY);
+            addFlag(c_oflag, oflag, OutputFlag.VTDLY, VTDLY);
+            addFlag(c_oflag, oflag, OutputFlag.OFDEL, OFDEL);
+            // Control flags
+            EnumSet<ControlFlag> cflag = attr.getControlFlags();
+            addFlag(c_cflag, cflag, ControlFlag.CS5, CS5);
+            addFlag(c_cflag, cflag, ControlFlag.CS6, CS6);
+            addFlag(c_cflag, cflag, ControlFlag.CS7, CS7);
+            addFlag(c_cflag, cflag, ControlFlag.CS8, CS8);
+            addFlag(c_cflag, cflag, ControlFlag.CSTOPB, CSTOPB);
+            addFlag(c_cflag, cflag, ControlFlag.CREAD, CREAD);
+            addFlag(c_cflag, cflag, ControlFlag.PARENB, PARENB);
+            addFlag(c_cflag, cflag, ControlFlag.PARODD, PARODD);
+            addFlag(c_cflag, cflag, ControlFlag.HUPCL, HUPCL);
+            addFlag(c_cflag, cflag, ControlFlag.CLOCAL, CLOCAL);
+            // Local flags
+            EnumSet<LocalFlag> lflag = attr.getLocalFlags();
+            addFlag(c_lflag, lflag, LocalFlag.ECHOKE, ECHOKE);
+            addFlag(c_lflag, lflag, LocalFlag.ECHOE, ECHOE);
+            addFlag(c_lflag, lflag, LocalFlag.ECHOK, ECHOK);
+            addFlag(c_lflag, lflag, LocalFlag.ECHO, ECHO);
+            addFlag(c_lflag, lflag, LocalFlag.ECHONL, ECHONL);
+            addFlag(c_lflag, lflag, LocalFlag.ECHOPRT, ECHOPRT);
+            addFlag(c_lflag, lflag, LocalFlag.ECHOCTL, ECHOCTL);
+            addFlag(c_lflag, lflag, LocalFlag.ISIG, ISIG);
+            addFlag(c_lflag, lflag, LocalFlag.ICANON, ICANON);
+            addFlag(c_lflag, lflag, LocalFlag.EXTPROC, EXTPROC);
+            addFlag(c_lflag, lflag, LocalFlag.TOSTOP, TOSTOP);
+            addFlag(c_lflag, lflag, LocalFlag.FLUSHO, FLUSHO);
+            addFlag(c_lflag, lflag, LocalFlag.NOFLSH, NOFLSH);
+            // Control chars
+            EnumMap<ControlChar, Integer> cc = attr.getControlChars();
+            cc.put(ControlChar.VEOF,      c_cc[VEOF] & 0xff);
+            cc.put(ControlChar.VEOL,      c_cc[VEOL] & 0xff);
+            cc.put(ControlChar.VEOL2,     c_cc[VEOL2] & 0xff);
+            cc.put(ControlChar.VERASE,    c_cc[VERASE] & 0xff);
+            cc.put(ControlChar.VWERASE,   c_cc[VWERASE] & 0xff);
+            cc.put(ControlChar.VKILL,     c_cc[VKILL] & 0xff);
+            cc.put(ControlChar.VREPRINT,  c_cc[VREPRINT] & 0xff);
+            cc.put(ControlChar.VINTR,     c_cc[VINTR] & 0xff);
+            cc.put(ControlChar.VQUIT,     c_cc[VQUIT] & 0xff);
+            cc.put(ControlChar.VSUSP,     c_cc[VSUSP] & 0xff);
+            cc.put(ControlChar.VSTART,    c_cc[VSTART] & 0xff);
+            cc.put(ControlChar.VSTOP,     c_cc[VSTOP] & 0xff);
+            cc.put(ControlChar.VLNEXT,    c_cc[VLNEXT] & 0xff);
+            cc.put(ControlChar.VDISCARD,  c_cc[VDISCARD] & 0xff);
+            cc.put(ControlChar.VMIN,      c_cc[VMIN] & 0xff);
+            cc.put(ControlChar.VTIME,     c_cc[VTIME] & 0xff);
+            // Return
+            return attr;
+        }
+
+        private <T extends Enum<T>> void addFlag(int value, EnumSet<T> flags, T flag, int v) {
+            if ((value & v) != 0) {
+                flags.add(flag);
+            }
+        }
+
+        void read(MemorySegment seg) {
+            c_iflag = seg.get(JAVA_INT, C_IFLAG);
+            c_oflag = seg.get(JAVA_INT, C_OFLAG);
+            c_cflag = seg.get(JAVA_INT, C_CFLAG);
+            c_lflag = seg.get(JAVA_INT, C_LFLAG);
+            c_line = seg.get(JAVA_BYTE, C_LINE);
+            MemorySegment.copy(seg, JAVA_BYTE, C_CC, c_cc, 0, c_cc.length);
+            c_ispeed = seg.get(JAVA_INT, C_ISPEED);
+            c_ospeed = seg.get(JAVA_INT, C_OSPEED);
+        }
+
+        void write(MemorySegment seg) {
+            seg.set(JAVA_INT, C_IFLAG, c_iflag);
+            seg.set(JAVA_INT, C_OFLAG, c_oflag);
+            seg.set(JAVA_INT, C_CFLAG, c_cflag);
+            seg.set(JAVA_INT, C_LFLAG, c_lflag);
+            seg.set(JAVA_BYTE, C_LINE, c_line);
+            MemorySegment.copy(c_cc, 0, seg, JAVA_BYTE, C_CC, c_cc.length);
+            seg.set(JAVA_INT, C_ISPEED, c_ispeed);
+            seg.set(JAVA_INT, C_OSPEED, c_ospeed);
+        }
+    }
+
+    // CONSTANTS
+
+    public static final long TIOCGWINSZ = 0x00005413;
+    public static final long TIOCSWINSZ = 0x00005414;
+
+    public static final int VINTR       = 0;
+    public static final int VQUIT       = 1;
+    public static final int VERASE      = 2;
+    public static final int VKILL       = 3;
+    public static final int VEOF        = 4;
+    public static final int VTIME       = 5;
+    public static final int VMIN        = 6;
+    public static final int VSWTC       = 7;
+    public static final int VSTART      = 8;
+    public static final int VSTOP       = 9;
+    public static final int VSUSP       = 10;
+    public static final int VEOL        = 11;
+    public static final int VREPRINT    = 12;
+    public static final int VDISCARD    = 13;
+    public static final int VWERASE     = 14;
+    public static final int VLNEXT      = 15;
+    public static final int VEOL2       = 16;
+
+    public static final int IGNBRK =   0x0000001;
+    public static final int BRKINT =   0x0000002;
+    public static final int IGNPAR =   0x0000004;
+    public static final int PARMRK =   0x0000008;
+    public static final int INPCK =    0x0000010;
+    public static final int ISTRIP =   0x0000020;
+    public static final int INLCR =    0x0000040;
+    public static final int IGNCR =    0x0000080;
+    public static final int ICRNL =    0x0000100;
+    public static final int IUCLC =    0x0000200;
+    public static final int IXON =     0x0000400;
+    public static final int IXANY =    0x0000800;
+    public static final int IXOFF =    0x0001000;
+    public static final int IMAXBEL =  0x0002000;
+    public static final int IUTF8 =    0x0004000;
+
+    public static final int OPOST =    0x0000001;
+    public static final int OLCUC =    0x0000002;
+    public static final int ONLCR =    0x0000004;
+    public static final int OCRNL =    0x0000008;
+    public static final int ONOCR =    0x0000010;
+    public static final int ONLRET =   0x0000020;
+    public static final int OFILL =    0x0000040;
+    public static final int OFDEL =    0x0000080;
+    public static final int NLDLY =    0x0000100;
+    public static final int CRDLY =    0x0000600;
+    public static final int TABDLY =   0x0001800;
+    public static final int BSDLY =    0x0002000;
+    public static final int VTDLY =    0x0004000;
+    public static final int FFDLY =    0x0008000;
+
+    public static final int CSIZE =    0x0000030;
+    public static final int CS5 =      0x0000000;
+    public static final int CS6 =      0x0000010;
+    public static final int CS7 =      0x0000020;
+    public static final int CS8 =      0x0000030;
+    public static final int CSTOPB =   0x0000040;
+    public static final int CREAD =    0x0000080;
+    public static final int PARENB =   0x0000100;
+    public static final int PARODD =   0x0000200;
+    public static final int HUPCL =    0x0000400;
+    public static final int CLOCAL =   0x0000800;
+
+    public static final int ISIG =     0x0000001;
+    public static final int ICANON =   0x0000002;
+    public static final int XCASE =    0x0000004;
+    public static final int ECHO =     0x0000008;
+    public static final int ECHOE =    0x0000010;
+    public static final int ECHOK =    0x0000020;
+    public static final int ECHONL =   0x0000040;
+    public static final int NOFLSH =   0x0000080;
+    public static final int TOSTOP =   0x0000100;
+    public static final int ECHOCTL =  0x0000200;
+    public static final int ECHOPRT =  0x0000400;
+    public static final int ECHOKE =   0x0000800;
+    public static final int FLUSHO =   0x0001000;
+    public static final int PENDIN =   0x0002000;
+    public static final int IEXTEN =   0x0008000;
+    public static final int EXTPROC =  0x0010000;
+
+    public static final int TCSANOW =          0x0;
+    public static final int TCSADRAIN =        0x1;
+    public static final int TCSAFLUSH =        0x2;
+
+}
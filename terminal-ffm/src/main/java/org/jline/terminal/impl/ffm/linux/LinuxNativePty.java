@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl.ffm.linux;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.ffm.FfmNativePty;
+
+import static org.jline.terminal.impl.ffm.linux.CLibrary.TCSADRAIN;
+import static org.jline.terminal.impl.ffm.linux.CLibrary.TIOCGWINSZ;
+import static org.jline.terminal.impl.ffm.linux.CLibrary.TIOCSWINSZ;
+import static org.jline.terminal.impl.ffm.linux.CLibrary.termios;
+import static org.jline.terminal.impl.ffm.linux.CLibrary.winsize;
+
+public class LinuxNativePty extends FfmNativePty {
+
+    /**
+     * The structure layouts and ioctl numbers are the generic Linux ones,
+     * which are not valid on all architectures (e.g. ppc, mips or sparc).
+     */
+    public static boolean isSupported() {
+        String os = System.getProperty("os.name");
+        String arch = System.getProperty("os.arch");
+        return os != null && os.startsWith("Linux")
+                && ("amd64".equals(arch) || "x86_64".equals(arch) || "aarch64".equals(arch));
+    }
+
+    public static LinuxNativePty current() throws IOException {
+        int slave = 0;
+        String name = CLibrary.ttyname(slave);
+        return new LinuxNativePty(-1, null, slave, FileDescriptor.in, 1, FileDescriptor.out, name);
+    }
+
+    public static LinuxNativePty open(Attributes attr, Size size) throws IOException {
+        String[] name = new String[1];
+        int[] fds = CLibrary.openpty(
+                attr != null ? new termios(attr) : null,
+                size != null ? new winsize(size) : null,
+                name);
+        return new LinuxNativePty(fds[0], newDescriptor(fds[0]), fds[1], newDescriptor(fds[1]), name[0]);
+    }
+
+    public LinuxNativePty(int master, FileDescriptor masterFD, int slave, FileDescriptor slaveFD, String name) {
+        super(master, masterFD, slave, slaveFD, name);
+    }
+
+    public LinuxNativePty(int master, FileDescriptor masterFD, int slave, FileDescriptor slaveFD, int slaveOut, FileDescriptor slaveOutFD, String name) {
+        super(master, masterFD, slave, slaveFD, slaveOut, slaveOutFD, name);
+    }
+
+    @Override
+    public Attributes getAttr() throws IOException {
+        termios termios = new termios();
+        CLibrary.tcgetattr(getSlave(), termios);
+        return termios.toAttributes();
+    }
+
+    @Override
+    protected void doSetAttr(Attributes attr) throws IOException {
+        termios termios = new termios(attr);
+        termios org = new termios();
+        CLibrary.tcgetattr(getSlave(), org);
+        org.c_iflag = termios.c_iflag;
+        org.c_oflag = termios.c_oflag;
+        org.c_lflag = termios.c_lflag;
+        System.arraycopy(termios.c_cc, 0, org.c_cc, 0, termios.c_cc.length);
+        CLibrary.tcsetattr(getSlave(), TCSADRAIN, org);
+    }
+
+    @Override
+    public Size getSize() throws IOException {
+        winsize sz = new winsize();
+        CLibrary.ioctl(getSlave(), TIOCGWINSZ, sz);
+        return sz.toSize();
+    }
+
+    @Override
+    public void setSize(Size size) throws IOException {
+        winsize sz = new winsize(size);
+        CLibrary.ioctl(getSlave(), TIOCSWINSZ, sz);
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.impl.ffm;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Attributes.LocalFlag;
+import org.jline.terminal.Size;
+import org.jline.terminal.impl.ffm.linux.LinuxNativePty;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FfmNativePtyTest {
+
+    @Test
+    public void testDescriptor() {
+        assumeTrue(!System.getProperty( "os.name" ).startsWith( "Windows"));
+        assertNotNull(FfmNativePty.newDescriptor(4));
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        assumeTrue(LinuxNativePty.isSupported());
+        try (FfmNativePty pty = FfmNativePty.open(null, new Size(100, 30))) {
+            assertTrue(pty.getName().startsWith("/dev/"));
+            assertEquals(new Size(100, 30), pty.getSize());
+
+            pty.setSize(new Size(120, 40));
+            assertEquals(new Size(120, 40), pty.getSize());
+
+            Attributes attr = pty.getAttr();
+            attr.setLocalFlag(LocalFlag.ECHO, false);
+            attr.setControlChar(Attributes.ControlChar.VMIN, 0);
+            pty.setAttr(attr);
+            Attributes updated = pty.getAttr();
+            assertFalse(updated.getLocalFlag(LocalFlag.ECHO));
+            assertEquals(0, updated.getControlChar(Attributes.ControlChar.VMIN));
+        }
+    }
+}
@@ -17,8 +17,16 @@ import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
 
 import org.jline.terminal.impl.AbstractPosixTerminal;
 import org.jline.terminal.impl.DumbTerminal;
@@ -26,6 +34,7 @@ import org.jline.terminal.impl.ExecPty;
 import org.jline.terminal.impl.ExternalTerminal;
 import org.jline.terminal.impl.PosixPtyTerminal;
 import org.jline.terminal.impl.PosixSysTerminal;
+import org.jline.terminal.spi.FfmSupport;
 import org.jline.terminal.spi.JansiSupport;
 import org.jline.terminal.spi.JnaSupport;
 import org.jline.terminal.spi.Pty;
@@ -44,11 +53,13 @@ public final class TerminalBuilder {
     public static final String PROP_ENCODING = "org.jline.terminal.encoding";
     public static final String PROP_CODEPAGE = "org.jline.terminal.codepage";
     public static final String PROP_TYPE = "org.jline.terminal.type";
+    public static final String PROP_FFM = "org.jline.terminal.ffm";
     public static final String PROP_JNA = "org.jline.terminal.jna";
     public static final String PROP_JANSI = "org.jline.terminal.jansi";
     public static final String PROP_EXEC = "org.jline.terminal.exec";
     public static final String PROP_DUMB = "org.jline.terminal.dumb";
     public static final String PROP_DUMB_COLOR = "org.jline.terminal.dumb.color";
+    public static final String PROP_PROVIDER_CACHE = "org.jline.terminal.providerCache";
 
     //
     // Other system properties controlling various jline parts
@@ -91,6 +102,7 @@ public final class TerminalBuilder {
     private Charset encoding;
     private int codepage;
     private Boolean system;
+    private Boolean ffm;
     private Boolean jna;
     private Boolean jansi;
     private Boolean exec;
@@ -100,6 +112,7 @@ public final class TerminalBuilder {
     private boolean nativeSignals = false;
     private Terminal.SignalHandler signalHandler = Terminal.SignalHandler.SIG_DFL;
     private boolean paused = false;
+    private Path providerCache;
 
     private TerminalBuilder() {
     }
@@ -120,6 +133,20 @@ public final class TerminalBuilder {
         return this;
     }
 
+    /**
+     * Enables or disables the native pty support based on the Java
+     * Foreign Function and Memory API (defaults to true).
+     * This support is only used when running on JDK 22 or later
+     * and when the {@code jline-terminal-ffm} module is available.
+     *
+     * @param ffm whether the FFM based pty can be used
+     * @return The builder
+     */
+    public TerminalBuilder ffm(boolean ffm) {
+        this.ffm = ffm;
+        return this;
+    }
+
     public TerminalBuilder jna(boolean jna) {
         this.jna = jna;
         return this;
@@ -255,9 +282,26 @@ public final class TerminalBuilder {
         return this;
     }
 
+    /**
+     * File used to remember which provider has been used to create
+     * the system terminal, so that it can be tried first on subsequent
+     * launches instead of probing all the providers in turn.
+     * The entries are keyed by JVM, operating system and terminal type.
+     * Caching is disabled by default, it can also be enabled using the
+     * {@value #PROP_PROVIDER_CACHE} system property.
+     *
+     * @param providerCache the cache file or <code>null</code> to disable caching
+     * @return The builder
+     */
+    public TerminalBuilder providerCache(Path providerCache) {
+        this.providerCache = providerCache;
+        return this;
+    }
+
     public Terminal build() throws IOException {
+        long start = System.nanoTime();
         Terminal terminal = doBuild();
-        Log.debug(() -> "Using terminal " + terminal.getClass().getSimpleName());
+        Log.debug(() -> "Using terminal " + terminal.getClass().getSimpleName() + " (built in " + elapsed(start) + " ms)");
         if (terminal instanceof AbstractPosixTerminal) {
             Log.debug(() -> "Using pty " + ((AbstractPosixTerminal) terminal).getPty().getClass().getSimpleName());
         }
@@ -290,6 +334,13 @@ public final class TerminalBuilder {
         if (type == null) {
             type = System.getenv("TERM");
         }
+        Boolean ffm = this.ffm;
+        if (ffm == null) {
+            ffm = getBoolean(PROP_FFM, true);
+        }
+        if (ffm && !isFfmSupported()) {
+            ffm = false;
+        }
         Boolean jna = this.jna;
         if (jna == null) {
             jna = getBoolean(PROP_JNA, true);
@@ -311,72 +362,64 @@ public final class TerminalBuilder {
                 Log.warn("Attributes and size fields are ignored when creating a system terminal");
             }
             IllegalStateException exception = new IllegalStateException("Unable to create a system terminal");
+            List<Provider> providers = new ArrayList<>();
             if (OSUtils.IS_WINDOWS) {
-                boolean cygwinTerm = "cygwin".equals(System.getenv("TERM"));
-                boolean ansiPassThrough = OSUtils.IS_CONEMU;
                 //
                 // Cygwin support
                 //
+                boolean cygwinTerm = "cygwin".equals(System.getenv("TERM"));
                 if ((OSUtils.IS_CYGWIN || OSUtils.IS_MSYSTEM) && exec && !cygwinTerm) {
-                    try {
-                        Pty pty = ExecPty.current();
-                        // Cygwin defaults to XTERM, but actually supports 256 colors,
-                        // so if the value comes from the environment, change it to xterm-256color
-                        if ("xterm".equals(type) && this.type == null && System.getProperty(PROP_TYPE) == null) {
-                            type = "xterm-256color";
-                        }
-                        return new PosixSysTerminal(name, type, pty, encoding, nativeSignals, signalHandler);
-                    } catch (IOException e) {
-                        // Ignore if not a tty
-                        Log.debug("Error creating EXEC based terminal: ", e.getMessage(), e);
-                        exception.addSuppressed(e);
-                    }
+                    providers.add(Provider.EXEC);
                 }
                 if (jna) {
-                    try {
-                        return load(JnaSupport.class).winSysTerminal(name, type, ansiPassThrough, encoding, codepage, nativeSignals, signalHandler, paused);
-                    } catch (Throwable t) {
-                        Log.debug("Error creating JNA based terminal: ", t.getMessage(), t);
-                        exception.addSuppressed(t);
-                    }
+                    providers.add(Provider.JNA);
                 }
                 if (jansi) {
-                    try {
-                        return load(JansiSupport.class).winSysTerminal(name, type, ansiPassThrough, encoding, codepage, nativeSignals, signalHandler, paused);
-                    } catch (Throwable t) {
-                        Log.debug("Error creating JANSI based terminal: ", t.getMessage(), t);
-                        exception.addSuppressed(t);
-                    }
+                    providers.add(Provider.JANSI);
                 }
             } else {
+                if (ffm) {
+                    providers.add(Provider.FFM);
+                }
                 if (jna) {
-                    try {
-                        Pty pty = load(JnaSupport.class).current();
-                        return new PosixSysTerminal(name, type, pty, encoding, nativeSignals, signalHandler);
-                    } catch (Throwable t) {
-                        // ignore
-                        Log.debug("Error creating JNA based terminal: ", t.getMessage(), t);
-                        exception.addSuppressed(t);
-                    }
+                    providers.add(Provider.JNA);
                 }
                 if (jansi) {
-                    try {
-                        Pty pty = load(JansiSupport.class).current();
-                        return new PosixSysTerminal(name, type, pty, encoding, nativeSignals, signalHandler);
-                    } catch (Throwable t) {
-                        Log.debug("Error creating JANSI based terminal: ", t.getMessage(), t);
-                        exception.addSuppressed(t);
-                    }
+                    providers.add(Provider.JANSI);
                 }
                 if (exec) {
-                    try {
-                        Pty pty = ExecPty.current();
-                        return new PosixSysTerminal(name, type, pty, encoding, nativeSignals, signalHandler);
-                    } catch (Throwable t) {
-                        // Ignore if not a tty
-                        Log.debug("Error creating EXEC based terminal: ", t.getMessage(), t);
-                        exception.addSuppressed(t);
+                    providers.add(Provider.EXEC);
+                }
+            }
+            // Try the provider which succeeded the last time first
+            Path providerCache = this.providerCache;
+            if (providerCache == null) {
+                String str = System.getProperty(PROP_PROVIDER_CACHE);
+                if (str != null) {
+                    providerCache = Paths.get(str);
+                }
+            }
+            String providerKey = providerCache != null ? getProviderCacheKey(type) : null;
+            Provider cached = providerCache != null ? loadCachedProvider(providerCache, providerKey) : null;
+            if (cached != null && providers.remove(cached)) {
+                providers.add(0, cached);
+            }
+            for (Provider provider : providers) {
+                long start = System.nanoTime();
+                if (!provider.isAvailable()) {
+                    Log.debug(() -> provider + " support is not available (" + elapsed(start) + " ms)");
+                    continue;
+                }
+                try {
+                    Terminal terminal = buildSystemTerminal(provider, name, type, encoding, codepage);
+                    Log.debug(() -> "Created " + provider + " based terminal in " + elapsed(start) + " ms");
+                    if (providerCache != null && provider != cached) {
+                        storeCachedProvider(providerCache, providerKey, provider);
                     }
+                    return terminal;
+                } catch (Throwable t) {
+                    Log.debug("Error creating " + provider + " based terminal (" + elapsed(start) + " ms): ", t.getMessage(), t);
+                    exception.addSuppressed(t);
                 }
             }
             if (dumb == null || dumb) {
@@ -406,7 +449,15 @@ public final class TerminalBuilder {
                 throw exception;
             }
         } else {
-            if (jna) {
+            if (ffm && Provider.FFM.isAvailable()) {
+                try {
+                    Pty pty = load(FfmSupport.class).open(attributes, size);
+                    return new PosixPtyTerminal(name, type, pty, in, out, encoding, signalHandler, paused);
+                } catch (Throwable t) {
+                    Log.debug("Error creating FFM based terminal: ", t.getMessage(), t);
+                }
+            }
+            if (jna && Provider.JNA.isAvailable()) {
                 try {
                     Pty pty = load(JnaSupport.class).open(attributes, size);
                     return new PosixPtyTerminal(name, type, pty, in, out, encoding, signalHandler, paused);
@@ -414,7 +465,7 @@ public final class TerminalBuilder {
                     Log.debug("Error creating JNA based terminal: ", t.getMessage(), t);
                 }
             }
-            if (jansi) {
+            if (jansi && Provider.JANSI.isAvailable()) {
                 try {
                     Pty pty = load(JansiSupport.class).open(attributes, size);
                     return new PosixPtyTerminal(name, type, pty, in, out, encoding, signalHandler, paused);
@@ -433,6 +484,122 @@ public final class TerminalBuilder {
         }
     }
 
+    private Terminal buildSystemTerminal(Provider provider, String name, String type, Charset encoding,
+                                         int codepage) throws IOException {
+        boolean ansiPassThrough = OSUtils.IS_CONEMU;
+        switch (provider) {
+            case FFM:
+                return new PosixSysTerminal(name, type, load(FfmSupport.class).current(), encoding, nativeSignals, signalHandler);
+            case JNA:
+                if (OSUtils.IS_WINDOWS) {
+                    return load(JnaSupport.class).winSysTerminal(name, type, ansiPassThrough, encoding, codepage, nativeSignals, signalHandler, paused);
+                } else {
+                    return new PosixSysTerminal(name, type, load(JnaSupport.class).current(), encoding, nativeSignals, signalHandler);
+                }
+            case JANSI:
+                if (OSUtils.IS_WINDOWS) {
+                    return load(JansiSupport.class).winSysTerminal(name, type, ansiPassThrough, encoding, codepage, nativeSignals, signalHandler, paused);
+                } else {
+                    return new PosixSysTerminal(name, type, load(JansiSupport.class).current(), encoding, nativeSignals, signalHandler);
+                }
+            case EXEC:
+            default:
+                Pty pty = ExecPty.current();
+                // Cygwin defaults to XTERM, but actually supports 256 colors,
+                // so if the value comes from the environment, change it to xterm-256color
+                if (OSUtils.IS_WINDOWS && "xterm".equals(type) && this.type == null && System.getProperty(PROP_TYPE) == null) {
+                    type = "xterm-256color";
+                }
+                return new PosixSysTerminal(name, type, pty, encoding, nativeSignals, signalHandler);
+        }
+    }
+
+    private static String getProviderCacheKey(String type) {
+        return System.getProperty("java.vm.vendor") + "/" + System.getProperty("java.vm.version")
+                + "/" + System.getProperty("os.name") + "/" + System.getProperty("os.arch")
+                + "/" + type;
+    }
+
+    private static Provider loadCachedProvider(Path file, String key) {
+        try {
+            if (Files.isRegularFile(file)) {
+                Properties props = new Properties();
+                try (InputStream is = Files.newInputStream(file)) {
+                    props.load(is);
+                }
+                String value = props.getProperty(key);
+                if (value != null) {
+                    Log.debug("Using cached terminal provider ", value, " from ", file);
+                    return Provider.valueOf(value);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.debug("Error reading terminal provider cache ", file, e);
+        }
+        return null;
+    }
+
+    private static void storeCachedProvider(Path file, String key, Provider provider) {
+        try {
+            Properties props = new Properties();
+            if (Files.isRegularFile(file)) {
+                try (InputStream is = Files.newInputStream(file)) {
+                    props.load(is);
+                }
+            }
+            props.setProperty(key, provider.name());
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            // Write to a temporary file first, so that concurrent processes
+            // never see a partially written file
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream os = Files.newOutputStream(temp)) {
+                    props.store(os, "JLine terminal providers");
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            Log.debug("Error writing terminal provider cache ", file, e);
+        }
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * The providers which can be used to create a system terminal.
+     * Checking whether a provider is available only looks for the classes
+     * it needs, without loading any native library.
+     */
+    private enum Provider {
+        FFM("org.jline.terminal.impl.ffm.FfmSupportImpl"),
+        JNA("org.jline.terminal.impl.jna.JnaSupportImpl", "com.sun.jna.Native"),
+        JANSI("org.jline.terminal.impl.jansi.JansiSupportImpl", "org.fusesource.jansi.internal.CLibrary"),
+        EXEC;
+
+        private final String[] classes;
+
+        Provider(String... classes) {
+            this.classes = classes;
+        }
+
+        boolean isAvailable() {
+            ClassLoader loader = TerminalBuilder.class.getClassLoader();
+            for (String cl : classes) {
+                try {
+                    Class.forName(cl, false, loader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private static String getParentProcessCommand() {
         try {
             Class<?> phClass = Class.forName("java.lang.ProcessHandle");
@@ -447,6 +614,17 @@ public final class TerminalBuilder {
         }
     }
 
+    private static boolean isFfmSupported() {
+        // The FFM api has been finalized in JDK 22, so do not even
+        // try to load the provider on older JVMs
+        try {
+            String version = System.getProperty("java.specification.version");
+            return version != null && !version.startsWith("1.") && Integer.parseInt(version) >= 22;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     private static Boolean getBoolean(String name, Boolean def) {
         try {
             String str = System.getProperty(name);
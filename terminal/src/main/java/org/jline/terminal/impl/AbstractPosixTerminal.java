@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2002-2016, the original author or authors.
+ * Copyright (c) 2002-2019, the original author or authors.
  *
  * This software is distributable under the BSD license. See the terms of the
  * BSD license in the documentation provided with this software.
@@ -19,10 +19,25 @@ import org.jline.terminal.Cursor;
 import org.jline.terminal.Size;
 import org.jline.terminal.spi.Pty;
 
+/**
+ * Base class for terminals backed by a {@link Pty}.
+ *
+ * <p>Querying the pty can be expensive (for example, {@link ExecPty} forks
+ * a <code>stty</code> process for each call), so the last known attributes
+ * and size are cached.  The attributes are read again from the pty each
+ * time {@link #enterRawMode()} is called, so the cache only spans a single
+ * raw session (usually one <code>readLine</code>); within that session they
+ * are updated when set through this terminal.  They are also discarded when
+ * the process is continued after having been stopped, while the size is
+ * discarded on {@link Signal#WINCH}.  The size is only cached while
+ * {@link #isSizeTracked()} returns <code>true</code>.</p>
+ */
 public abstract class AbstractPosixTerminal extends AbstractTerminal {
 
     protected final Pty pty;
     protected final Attributes originalAttributes;
+    private volatile Attributes cachedAttributes;
+    private volatile Size cachedSize;
 
     public AbstractPosixTerminal(String name, String type, Pty pty) throws IOException {
         this(name, type, pty, null, SignalHandler.SIG_DFL);
@@ -33,6 +48,7 @@ public abstract class AbstractPosixTerminal extends AbstractTerminal {
         Objects.requireNonNull(pty);
         this.pty = pty;
         this.originalAttributes = this.pty.getAttr();
+        this.cachedAttributes = new Attributes(originalAttributes);
     }
 
     public Pty getPty() {
@@ -40,37 +56,99 @@ public abstract class AbstractPosixTerminal extends AbstractTerminal {
     }
 
     public Attributes getAttributes() {
-        try {
-            return pty.getAttr();
-        } catch (IOException e) {
-            throw new IOError(e);
+        Attributes attr = cachedAttributes;
+        if (attr == null) {
+            try {
+                attr = pty.getAttr();
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            cachedAttributes = new Attributes(attr);
+            return attr;
         }
+        return new Attributes(attr);
     }
 
     public void setAttributes(Attributes attr) {
         try {
+            if (cachedAttributes == null) {
+                // Let the pty know the current state of the tty, as it may
+                // only send the flags that differ from it
+                getAttributes();
+            }
             pty.setAttr(attr);
+            cachedAttributes = new Attributes(attr);
         } catch (IOException e) {
+            cachedAttributes = null;
             throw new IOError(e);
         }
     }
 
+    @Override
+    public Attributes enterRawMode() {
+        // Other programs may have changed the tty since the last session
+        discardCachedAttributes();
+        return super.enterRawMode();
+    }
+
     public Size getSize() {
-        try {
-            return pty.getSize();
-        } catch (IOException e) {
-            throw new IOError(e);
+        Size size = cachedSize;
+        if (size == null || !isSizeTracked()) {
+            try {
+                size = pty.getSize();
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            if (isSizeTracked()) {
+                cachedSize = new Size(size.getColumns(), size.getRows());
+            }
+            return size;
         }
+        return new Size(size.getColumns(), size.getRows());
     }
 
     public void setSize(Size size) {
         try {
             pty.setSize(size);
+            cachedSize = new Size(size.getColumns(), size.getRows());
         } catch (IOException e) {
+            cachedSize = null;
             throw new IOError(e);
         }
     }
 
+    @Override
+    public void raise(Signal signal) {
+        if (signal == Signal.WINCH) {
+            discardCachedSize();
+        } else if (signal == Signal.CONT) {
+            // The terminal may have been used by another process while stopped
+            discardCachedAttributes();
+            discardCachedSize();
+        }
+        super.raise(signal);
+    }
+
+    /**
+     * Whether this terminal is notified of size changes, i.e. whether
+     * {@link #raise(Signal)} is called with {@link Signal#WINCH} each time
+     * the size of the underlying pty is modified by someone else.
+     * The size is only cached while this method returns <code>true</code>.
+     *
+     * @return <code>true</code> if the size can be cached
+     */
+    protected boolean isSizeTracked() {
+        return true;
+    }
+
+    protected void discardCachedAttributes() {
+        cachedAttributes = null;
+    }
+
+    protected void discardCachedSize() {
+        cachedSize = null;
+    }
+
     public void close() throws IOException {
         super.close();
         pty.setAttr(originalAttributes);
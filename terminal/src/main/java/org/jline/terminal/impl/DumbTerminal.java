@@ -46,34 +46,62 @@ public class DumbTerminal extends AbstractTerminal {
             @Override
             public int read(long timeout, boolean isPeek) throws IOException {
                 for (;;) {
-                    int c = nbis.read(timeout, isPeek);
-                    if (attributes.getLocalFlag(Attributes.LocalFlag.ISIG)) {
-                        if (c == attributes.getControlChar(ControlChar.VINTR)) {
-                            raise(Signal.INT);
-                            continue;
-                        } else if (c == attributes.getControlChar(ControlChar.VQUIT)) {
-                            raise(Signal.QUIT);
-                            continue;
-                        } else if (c == attributes.getControlChar(ControlChar.VSUSP)) {
-                            raise(Signal.TSTP);
-                            continue;
-                        } else if (c == attributes.getControlChar(ControlChar.VSTATUS)) {
-                            raise(Signal.INFO);
-                            continue;
-                        }
+                    int c = process(nbis.read(timeout, isPeek));
+                    if (c != SKIP) {
+                        return c;
                     }
-                    if (c == '\r') {
-                        if (attributes.getInputFlag(Attributes.InputFlag.IGNCR)) {
-                            continue;
-                        }
-                        if (attributes.getInputFlag(Attributes.InputFlag.ICRNL)) {
-                            c = '\n';
+                }
+            }
+
+            @Override
+            public int readBuffered(byte[] b) throws IOException {
+                for (;;) {
+                    int l = nbis.readBuffered(b);
+                    if (l <= 0) {
+                        return l;
+                    }
+                    int n = 0;
+                    for (int i = 0; i < l; i++) {
+                        int c = process(b[i] & 0xFF);
+                        if (c != SKIP) {
+                            b[n++] = (byte) c;
                         }
-                    } else if (c == '\n' && attributes.getInputFlag(Attributes.InputFlag.INLCR)) {
-                        c = '\r';
                     }
-                    return c;
+                    if (n > 0) {
+                        return n;
+                    }
+                }
+            }
+
+            private static final int SKIP = -3;
+
+            private int process(int c) {
+                if (attributes.getLocalFlag(Attributes.LocalFlag.ISIG)) {
+                    if (c == attributes.getControlChar(ControlChar.VINTR)) {
+                        raise(Signal.INT);
+                        return SKIP;
+                    } else if (c == attributes.getControlChar(ControlChar.VQUIT)) {
+                        raise(Signal.QUIT);
+                        return SKIP;
+                    } else if (c == attributes.getControlChar(ControlChar.VSUSP)) {
+                        raise(Signal.TSTP);
+                        return SKIP;
+                    } else if (c == attributes.getControlChar(ControlChar.VSTATUS)) {
+                        raise(Signal.INFO);
+                        return SKIP;
+                    }
+                }
+                if (c == '\r') {
+                    if (attributes.getInputFlag(Attributes.InputFlag.IGNCR)) {
+                        return SKIP;
+                    }
+                    if (attributes.getInputFlag(Attributes.InputFlag.ICRNL)) {
+                        c = '\n';
+                    }
+                } else if (c == '\n' && attributes.getInputFlag(Attributes.InputFlag.INLCR)) {
+                    c = '\r';
                 }
+                return c;
             }
         };
         this.output = out;
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2002-2016, the original author or authors.
+ * Copyright (c) 2002-2019, the original author or authors.
  *
  * This software is distributable under the BSD license. See the terms of the
  * BSD license in the documentation provided with this software.
@@ -35,6 +35,15 @@ public class ExecPty extends AbstractPty implements Pty {
 
     private final String name;
     private final boolean system;
+    /**
+     * The attributes last read from or written to the tty, used to compute
+     * the flags to change without an additional <code>stty -a</code> call.
+     * They are refreshed by each {@link #getAttr()}, which
+     * {@link AbstractPosixTerminal} calls when entering raw mode and whenever
+     * its own cache has been discarded, so that changes made to the tty by
+     * other processes are not overwritten with stale values.
+     */
+    private volatile Attributes lastAttributes;
 
     public static Pty current() throws IOException {
         try {
@@ -85,12 +94,19 @@ public class ExecPty extends AbstractPty implements Pty {
     @Override
     public Attributes getAttr() throws IOException {
         String cfg = doGetConfig();
-        return doGetAttr(cfg);
+        Attributes attr = doGetAttr(cfg);
+        lastAttributes = new Attributes(attr);
+        return attr;
     }
 
     @Override
     protected void doSetAttr(Attributes attr) throws IOException {
-        List<String> commands = getFlagsToSet(attr, getAttr());
+        Attributes current = lastAttributes;
+        if (current == null) {
+            current = getAttr();
+        }
+        lastAttributes = null;
+        List<String> commands = getFlagsToSet(attr, current);
         if (!commands.isEmpty()) {
             commands.add(0, OSUtils.STTY_COMMAND);
             if (!system) {
@@ -109,8 +125,18 @@ public class ExecPty extends AbstractPty implements Pty {
                 } else {
                     throw e;
                 }
+                return;
+            }
+        }
+        // All the flags have been changed in a single stty call,
+        // so we know the new state without asking the tty again
+        Attributes updated = new Attributes(attr);
+        for (ControlChar cchar : ControlChar.values()) {
+            if (attr.getControlChar(cchar) < 0) {
+                updated.setControlChar(cchar, current.getControlChar(cchar));
             }
         }
+        lastAttributes = updated;
     }
 
     protected List<String> getFlagsToSet(Attributes attr, Attributes current) {
@@ -160,6 +160,14 @@ public class PosixPtyTerminal extends AbstractPosixTerminal {
             return in.read(timeout, isPeek);
         }
 
+        @Override
+        public int readBuffered(byte[] b) throws IOException {
+            if (closed.get()) {
+                throw new ClosedException();
+            }
+            return in.readBuffered(b);
+        }
+
         @Override
         public void close() throws IOException {
             closed.set(true);
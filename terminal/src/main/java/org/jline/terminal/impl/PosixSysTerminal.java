@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2002-2018, the original author or authors.
+ * Copyright (c) 2002-2019, the original author or authors.
  *
  * This software is distributable under the BSD license. See the terms of the
  * BSD license in the documentation provided with this software.
@@ -33,6 +33,7 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
     protected final PrintWriter writer;
     protected final Map<Signal, Object> nativeHandlers = new HashMap<>();
     protected final Task closer;
+    protected volatile boolean winchTracked;
 
     public PosixSysTerminal(String name, String type, Pty pty, Charset encoding,
                             boolean nativeSignals, SignalHandler signalHandler) throws IOException {
@@ -47,7 +48,11 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
                 if (signalHandler == SignalHandler.SIG_DFL) {
                     nativeHandlers.put(signal, Signals.registerDefault(signal.name()));
                 } else {
-                    nativeHandlers.put(signal, Signals.register(signal.name(), () -> raise(signal)));
+                    Object prev = Signals.register(signal.name(), () -> raise(signal));
+                    nativeHandlers.put(signal, prev);
+                    if (signal == Signal.WINCH) {
+                        winchTracked = prev != null;
+                    }
                 }
             }
         }
@@ -59,15 +64,26 @@ public class PosixSysTerminal extends AbstractPosixTerminal {
     public SignalHandler handle(Signal signal, SignalHandler handler) {
         SignalHandler prev = super.handle(signal, handler);
         if (prev != handler) {
+            boolean tracked;
             if (handler == SignalHandler.SIG_DFL) {
                 Signals.registerDefault(signal.name());
+                tracked = false;
             } else {
-                Signals.register(signal.name(), () -> raise(signal));
+                tracked = Signals.register(signal.name(), () -> raise(signal)) != null;
+            }
+            if (signal == Signal.WINCH && tracked != winchTracked) {
+                winchTracked = tracked;
+                discardCachedSize();
             }
         }
         return prev;
     }
 
+    @Override
+    protected boolean isSizeTracked() {
+        return winchTracked;
+    }
+
     public NonBlockingReader reader() {
         return reader;
     }
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2002-2019, the original author or authors.
+ *
+ * This software is distributable under the BSD license. See the terms of the
+ * BSD license in the documentation provided with this software.
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ */
+package org.jline.terminal.spi;
+
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
+
+import java.io.IOException;
+
+/**
+ * Native pty support based on the Java Foreign Function and Memory API.
+ * Implementations require a JDK providing the final {@code java.lang.foreign}
+ * API (JDK 22 or later) and do not need any additional native library.
+ */
+public interface FfmSupport {
+
+    Pty current() throws IOException;
+
+    Pty open(Attributes attributes, Size size) throws IOException;
+
+}
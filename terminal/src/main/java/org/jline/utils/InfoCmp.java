@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,7 +27,11 @@ import java.util.stream.Collectors;
  */
 public final class InfoCmp {
 
-    private static final Map<String, Object> CAPS = new HashMap<>();
+    private static final Map<String, Object> CAPS = new ConcurrentHashMap<>();
+
+    private static final Pattern CAPABILITY_PATTERN = Pattern.compile("\\s*(([^,]|\\\\,)+)\\s*[,$]");
+
+    private static volatile Map<String, Capability> capabilitiesByName;
 
     private InfoCmp() {
     }
@@ -503,16 +508,29 @@ public final class InfoCmp {
         public String[] getNames() {
             return getCapabilitiesByName().entrySet().stream()
                     .filter(e -> e.getValue() == this)
-                    .map(Map.Entry::getValue)
+                    .map(Map.Entry::getKey)
                     .toArray(String[]::new);
         }
 
         public static Capability byName(String name) {
-            return getCapabilitiesByName().get(name);
+            return capabilitiesByName().get(name);
         }
     }
     
     public static Map<String, Capability> getCapabilitiesByName() {
+        return new LinkedHashMap<>(capabilitiesByName());
+    }
+
+    private static Map<String, Capability> capabilitiesByName() {
+        Map<String, Capability> capabilities = capabilitiesByName;
+        if (capabilities == null) {
+            capabilities = Collections.unmodifiableMap(loadCapabilitiesByName());
+            capabilitiesByName = capabilities;
+        }
+        return capabilities;
+    }
+
+    private static Map<String, Capability> loadCapabilitiesByName() {
         Map<String, Capability> capabilities = new LinkedHashMap<>();
         try (InputStream is = InfoCmp.class.getResourceAsStream("capabilities.txt");
              BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
@@ -554,7 +572,12 @@ public final class InfoCmp {
     public static String getLoadedInfoCmp(String terminal) {
         Object caps = CAPS.get(terminal);
         if (caps instanceof Supplier) {
-            caps = ((Supplier) caps).get();
+            Object supplier = caps;
+            caps = ((Supplier) supplier).get();
+            // Only load the default capabilities once
+            if (caps != null) {
+                CAPS.replace(terminal, supplier, caps);
+            }
         }
         return (String) caps;
     }
@@ -565,10 +588,10 @@ public final class InfoCmp {
             Map<Capability, Integer> ints,
             Map<Capability, String> strings
     ) {
-        Map<String, Capability> capsByName = getCapabilitiesByName();
+        Map<String, Capability> capsByName = capabilitiesByName();
         String[] lines = capabilities.split("\n");
         for (int i = 1; i < lines.length; i++) {
-            Matcher m = Pattern.compile("\\s*(([^,]|\\\\,)+)\\s*[,$]").matcher(lines[i]);
+            Matcher m = CAPABILITY_PATTERN.matcher(lines[i]);
             while (m.find()) {
                 String cap = m.group(1);
                 if (cap.contains("#")) {
@@ -197,6 +197,42 @@ public class NonBlocking {
             }
         }
 
+        @Override
+        public int readBuffered(char[] b) throws IOException {
+            if (b.length == 0) {
+                return 0;
+            }
+            if (chars.hasRemaining()) {
+                int r = Math.min(b.length, chars.remaining());
+                chars.get(b, 0, r);
+                return r;
+            }
+            // Make sure the decoded chars will fit in b
+            byte[] buf = new byte[Math.max(1, (int) (b.length / decoder.maxCharsPerByte()))];
+            CharBuffer out = CharBuffer.wrap(b);
+            while (out.position() == 0) {
+                int l = input.readBuffered(buf);
+                if (l < 0) {
+                    return l;
+                }
+                ByteBuffer in;
+                if (bytes.hasRemaining()) {
+                    in = ByteBuffer.allocate(bytes.remaining() + l);
+                    in.put(bytes);
+                    in.put(buf, 0, l);
+                    in.flip();
+                } else {
+                    in = ByteBuffer.wrap(buf, 0, l);
+                }
+                decoder.decode(in, out, false);
+                // Keep the bytes of an incomplete char for the next read
+                bytes.clear();
+                bytes.put(in);
+                bytes.flip();
+            }
+            return out.position();
+        }
+
         @Override
         public void shutdown() {
             input.shutdown();
@@ -78,6 +78,21 @@ public abstract class NonBlockingInputStream extends InputStream {
         return 1;
     }
 
+    /**
+     * Reads the bytes which are readily available, blocking until at least
+     * one byte is available.  Implementations which can access their input
+     * in bulk should override this method, the default implementation only
+     * reads a single byte.
+     *
+     * @param b the buffer into which the data is read
+     * @return the number of bytes read, or <code>-1</code> if the end of
+     *         the stream is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int readBuffered(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
     /**
      * Shuts down the thread that is handling blocking I/O if any. Note that if the
      * thread is currently blocked waiting for I/O it may not actually
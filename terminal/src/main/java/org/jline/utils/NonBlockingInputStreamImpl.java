@@ -175,6 +175,19 @@ public class NonBlockingInputStreamImpl
         return ret;
     }
 
+    /**
+     * Reads the bytes which are readily available.  If there is no pending
+     * byte and the reading thread is idle, the read is done in bulk directly
+     * on the underlying stream.
+     */
+    @Override
+    public synchronized int readBuffered(byte[] buf) throws IOException {
+        if (exception == null && b == READ_EXPIRED && !threadIsReading && buf.length > 0) {
+            return in.read(buf);
+        }
+        return super.readBuffered(buf);
+    }
+
     private void run () {
         Log.debug("NonBlockingInputStream start");
         boolean needToRead;
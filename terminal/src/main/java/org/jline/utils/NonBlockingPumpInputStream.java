@@ -106,6 +106,22 @@ public class NonBlockingPumpInputStream extends NonBlockingInputStream {
         return res;
     }
 
+    @Override
+    public synchronized int readBuffered(byte[] b) throws IOException {
+        if (b.length == 0) {
+            return 0;
+        }
+        checkIoException();
+        // Blocks until more input is available or the reader is closed.
+        int res = wait(readBuffer, 0L);
+        if (res >= 0) {
+            res = Math.min(b.length, readBuffer.remaining());
+            readBuffer.get(b, 0, res);
+        }
+        rewind(readBuffer, writeBuffer);
+        return res;
+    }
+
     public synchronized void setIoException(IOException exception) {
         this.ioException = exception;
         notifyAll();
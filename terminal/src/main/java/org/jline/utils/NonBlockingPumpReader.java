@@ -106,6 +106,21 @@ public class NonBlockingPumpReader extends NonBlockingReader {
         return res;
     }
 
+    @Override
+    public synchronized int readBuffered(char[] b) throws IOException {
+        if (b.length == 0) {
+            return 0;
+        }
+        // Blocks until more input is available or the reader is closed.
+        int res = wait(readBuffer, 0L);
+        if (res >= 0) {
+            res = Math.min(b.length, readBuffer.remaining());
+            readBuffer.get(b, 0, res);
+        }
+        rewind(readBuffer, writeBuffer);
+        return res;
+    }
+
     synchronized void write(char[] cbuf, int off, int len) throws IOException {
         while (len > 0) {
             // Blocks until there is new space available for buffering or the
@@ -85,6 +85,21 @@ public abstract class NonBlockingReader extends Reader {
         return 1;
     }
 
+    /**
+     * Read the chars which are readily available, blocking until at least
+     * one char is available.  Implementations which can access their input
+     * in bulk should override this method, the default implementation only
+     * reads a single char.
+     *
+     * @param b the buffer into which the data is read
+     * @return the number of chars read, or {@link #EOF} if the end of the
+     *         stream has been reached
+     * @throws IOException if anything wrong happens
+     */
+    public int readBuffered(char[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
     public int available() {
         return 0;
     }
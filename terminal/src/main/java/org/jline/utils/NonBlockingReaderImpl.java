@@ -182,6 +182,19 @@ public class NonBlockingReaderImpl
         return ret;
     }
 
+    /**
+     * Reads the chars which are readily available.  If there is no pending
+     * char and the reading thread is idle, the read is done in bulk directly
+     * on the underlying reader.
+     */
+    @Override
+    public synchronized int readBuffered(char[] buf) throws IOException {
+        if (exception == null && ch == READ_EXPIRED && !threadIsReading && buf.length > 0) {
+            return in.read(buf);
+        }
+        return super.readBuffered(buf);
+    }
+
     private void run () {
         Log.debug("NonBlockingReader start");
         boolean needToRead;
@@ -10,6 +10,7 @@ package org.jline.terminal.impl;
 
 import org.easymock.EasyMock;
 import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
 import org.jline.terminal.Terminal.Signal;
 import org.jline.terminal.Terminal.SignalHandler;
 import org.jline.terminal.spi.Pty;
@@ -67,4 +68,55 @@ public class PosixSysTerminalTest {
             assertEquals(Signal.values().length, terminal.nativeHandlers.size());
         }
     }
+
+    @Test
+    public void testCachedAttributesAndSize() throws Exception {
+        Pty pty = EasyMock.createNiceMock(Pty.class);
+        EasyMock.expect(pty.getAttr()).andReturn(new Attributes()).times(2);
+        EasyMock.expect(pty.getSize()).andReturn(new Size(80, 24)).once();
+        EasyMock.expect(pty.getSize()).andReturn(new Size(100, 40)).once();
+        EasyMock.expect(pty.getSlaveInput()).andReturn(new ByteArrayInputStream(new byte[0])).anyTimes();
+        EasyMock.expect(pty.getSlaveOutput()).andReturn(new ByteArrayOutputStream()).anyTimes();
+        EasyMock.replay(pty);
+        try (PosixSysTerminal terminal = new PosixSysTerminal(
+                "name", "ansi", pty, null, false, SignalHandler.SIG_DFL)) {
+            SignalHandler prev = terminal.handle(Signal.WINCH, s -> {});
+            terminal.getAttributes();
+            terminal.enterRawMode();
+            assertEquals(0, terminal.getAttributes().getControlChar(Attributes.ControlChar.VMIN));
+            assertEquals(new Size(80, 24), terminal.getSize());
+            terminal.getSize().setColumns(10);
+            assertEquals(new Size(80, 24), terminal.getSize());
+            terminal.raise(Signal.WINCH);
+            assertEquals(new Size(100, 40), terminal.getSize());
+            assertEquals(new Size(100, 40), terminal.getSize());
+            terminal.handle(Signal.WINCH, prev);
+        }
+        EasyMock.verify(pty);
+    }
+
+    @Test
+    public void testAttributesReadOnEnterRawMode() throws Exception {
+        Attributes changed = new Attributes();
+        changed.setControlChar(Attributes.ControlChar.VINTR, 7);
+        Pty pty = EasyMock.createNiceMock(Pty.class);
+        EasyMock.expect(pty.getAttr()).andReturn(new Attributes()).times(2);
+        // Another process modified the tty between the two raw sessions
+        EasyMock.expect(pty.getAttr()).andReturn(changed).once();
+        EasyMock.expect(pty.getSlaveInput()).andReturn(new ByteArrayInputStream(new byte[0])).anyTimes();
+        EasyMock.expect(pty.getSlaveOutput()).andReturn(new ByteArrayOutputStream()).anyTimes();
+        EasyMock.replay(pty);
+        try (PosixSysTerminal terminal = new PosixSysTerminal(
+                "name", "ansi", pty, null, false, SignalHandler.SIG_DFL)) {
+            Attributes prev = terminal.enterRawMode();
+            terminal.getAttributes();
+            terminal.setAttributes(prev);
+            terminal.getAttributes();
+            prev = terminal.enterRawMode();
+            assertEquals(7, prev.getControlChar(Attributes.ControlChar.VINTR));
+            assertEquals(7, terminal.getAttributes().getControlChar(Attributes.ControlChar.VINTR));
+            terminal.setAttributes(prev);
+        }
+        EasyMock.verify(pty);
+    }
 }